@@ -1,7 +1,7 @@
 package sk.rajniak.bottombardrawerexample;
 
 import sk.rajniak.bottombardrawer.BottomBarDrawerLayout;
-import sk.rajniak.bottombardrawer.BottomBarDrawerLayout.DrawerListener;
+import sk.rajniak.bottombardrawer.BottomBarDrawerLayout.DrawerThresholdListener;
 import android.app.ActionBar;
 import android.app.Activity;
 import android.os.Bundle;
@@ -19,33 +19,18 @@ public class MainActivity extends Activity {
 
 		final BottomBarDrawerLayout slideInLayout = (BottomBarDrawerLayout) findViewById(R.id.drawerLayout);
 		slideInLayout.setDrawerShadow(R.drawable.drawer_shadow);
-		slideInLayout.setDrawerListener(new DrawerListener() {
+		slideInLayout.addDrawerThreshold(0.8f, new DrawerThresholdListener() {
 
 			@Override
-			public void onDrawerStateChanged(int newState) {
- 
-			}
-
-			@Override
-			public void onDrawerSlide(View drawerView, float slideOffset) {
+			public void onDrawerThresholdCrossed(View drawerView, float threshold, boolean opening) {
 				if (actionBar != null) {
-					if (slideOffset > 0.8f) {
+					if (opening) {
 						actionBar.hide();
 					} else {
 						actionBar.show();
 					}
 				}
 			}
-
-			@Override
-			public void onDrawerOpened(View drawerView) {
-
-			}
-
-			@Override
-			public void onDrawerClosed(View drawerView) {
-
-			}
 		});
 	}
 
@@ -1,29 +1,49 @@
 package sk.rajniak.bottombardrawer;
 
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.PixelFormat;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.os.Process;
+import android.os.SystemClock;
 import android.support.v4.view.AccessibilityDelegateCompat;
 import android.support.v4.view.KeyEventCompat;
 import android.support.v4.view.MotionEventCompat;
 import android.support.v4.view.ViewCompat;
 import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
-import android.support.v4.widget.DrawerLayout.SimpleDrawerListener;
-import android.support.v4.widget.ViewDragHelper;
+import android.support.v4.widget.ScrollerCompat;
 import android.util.AttributeSet;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.TypedValue;
 import android.view.KeyEvent;
+import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewConfiguration;
 import android.view.ViewGroup;
 import android.view.ViewParent;
+import android.view.WindowManager;
 import android.view.accessibility.AccessibilityEvent;
+import android.view.animation.AnimationUtils;
+import android.view.animation.Interpolator;
 
 /**
  * BottomBarDrawerLayout acts as a top-level container for window content that allows for
@@ -47,29 +67,157 @@ import android.view.accessibility.AccessibilityEvent;
  *
  */
 public class BottomBarDrawerLayout extends ViewGroup {
+	private static final String TAG = "BottomBarDrawerLayout";
 
 	/**
 	 * Indicates that the drawer is in an idle, settled state. No animation is
 	 * in progress.
 	 */
-	public static final int STATE_IDLE = ViewDragHelper.STATE_IDLE;
+	public static final int STATE_IDLE = DrawerDragHelper.STATE_IDLE;
 
 	/**
 	 * Indicates that the drawer is currently being dragged by the user.
 	 */
-	public static final int STATE_DRAGGING = ViewDragHelper.STATE_DRAGGING;
+	public static final int STATE_DRAGGING = DrawerDragHelper.STATE_DRAGGING;
 
 	/**
 	 * Indicates that the drawer is in the process of settling to a final
 	 * position.
 	 */
-	public static final int STATE_SETTLING = ViewDragHelper.STATE_SETTLING;
+	public static final int STATE_SETTLING = DrawerDragHelper.STATE_SETTLING;
+
+	/**
+	 * No view is promoted to a hardware layer while the drawer moves.
+	 */
+	public static final int HARDWARE_LAYERS_NONE = 0;
+
+	/**
+	 * Drawer view is promoted to a hardware layer while the drawer moves.
+	 */
+	public static final int HARDWARE_LAYERS_DRAWER = 1;
+
+	/**
+	 * Content view is promoted to a hardware layer while the drawer moves.
+	 */
+	public static final int HARDWARE_LAYERS_CONTENT = 2;
+
+	/**
+	 * View alpha bound to the drawer offset.
+	 */
+	public static final int PROPERTY_ALPHA = 0;
+
+	/**
+	 * View horizontal translation bound to the drawer offset.
+	 */
+	public static final int PROPERTY_TRANSLATION_X = 1;
+
+	/**
+	 * View vertical translation bound to the drawer offset.
+	 */
+	public static final int PROPERTY_TRANSLATION_Y = 2;
+
+	/**
+	 * View horizontal scale bound to the drawer offset.
+	 */
+	public static final int PROPERTY_SCALE_X = 3;
+
+	/**
+	 * View vertical scale bound to the drawer offset.
+	 */
+	public static final int PROPERTY_SCALE_Y = 4;
+
+	/**
+	 * Scrims are drawn by the layout over its children.
+	 */
+	public static final int SCRIM_MODE_DRAW = 0;
+
+	/**
+	 * Content scrim is applied as a color filter of the content hardware layer
+	 * and blended by the GPU, the layout doesn't draw it.
+	 */
+	public static final int SCRIM_MODE_LAYER = 1;
+
+	/**
+	 * Released drawer settles along an ease out curve with duration matched to
+	 * the release velocity.
+	 */
+	public static final int SETTLE_MODE_SCROLLER = 0;
+
+	/**
+	 * Released drawer settles driven by a damped spring starting at the release
+	 * velocity.
+	 */
+	public static final int SETTLE_MODE_SPRING = 1;
 
 	/**
 	 * Minimum velocity that will be detected as a fling
 	 */
 	private static final int MIN_FLING_VELOCITY = 400; // dips per second
+
+	/**
+	 * Part of the drag range the drawer has to be dragged away from the anchor
+	 * where the drag started to snap to the next anchor in drag direction.
+	 */
+	private static final float DRAG_SLOP_OFFSET = 0.1f;
+
+	/**
+	 * Deceleration used to project where a flung drawer would come to rest
+	 */
+	private static final int DEFAULT_FLING_DECELERATION = 8000; // dips per second squared
+
+	private static final int BASE_SETTLE_DURATION = 256; // ms
+	private static final int MIN_SETTLE_DURATION = 80; // ms
+	private static final int MAX_SETTLE_DURATION = 600; // ms
+
+	/**
+	 * Spring settle ends once slower than this
+	 */
+	private static final int SPRING_REST_VELOCITY = 10; // dips per second
+
+	/**
+	 * Distance over which the drawer shadow fades in as the drawer leaves the
+	 * bottom edge
+	 */
+	private static final int SHADOW_FADE_DISTANCE = 20; // dp
+
+	/**
+	 * Refresh rate assumed when the display doesn't report one
+	 */
+	private static final float DEFAULT_REFRESH_RATE = 60.f; // Hz
+
+	/**
+	 * API level of View#requestUnbufferedDispatch(MotionEvent)
+	 */
+	private static final int UNBUFFERED_DISPATCH_SDK = 21;
+
+	/**
+	 * View#SCROLL_AXIS_VERTICAL of API 21
+	 */
+	private static final int NESTED_SCROLL_AXIS_VERTICAL = 1 << 1;
+
+	private static Method sRequestUnbufferedDispatchMethod;
+	private static boolean sRequestUnbufferedDispatchMethodFetched;
+
+	/**
+	 * Quadratic ease out, its initial speed is 2 * distance / duration.
+	 */
+	private static final Interpolator sSettleInterpolator = new Interpolator() {
+		@Override
+		public float getInterpolation(float t) {
+			t = 1.f - t;
+			return 1.f - t * t;
+		}
+	};
 	
+	private static final DrawerListener[] NO_LISTENERS = new DrawerListener[0];
+	private static final float[] NO_THRESHOLDS = new float[0];
+	private static final DrawerThresholdListener[] NO_THRESHOLD_LISTENERS = new DrawerThresholdListener[0];
+
+	/**
+	 * Number of opacity steps of the content scrim in layer scrim mode
+	 */
+	private static final int LAYER_SCRIM_STEPS = 64;
+
 	private static final int DEFAULT_CONTENT_SCRIM_COLOR = 0x99000000;
 	private static final int DEFAULT_DRAWER_SCRIM_COLOR = 0x99FFFFFF;
 
@@ -78,11 +226,27 @@ public class BottomBarDrawerLayout extends ViewGroup {
 	private final Paint mContentScrimPaint = new Paint();
 
 	private int mDrawerScrimColor = DEFAULT_DRAWER_SCRIM_COLOR;
-	private float mDrawerScrimOpacity;
+	private float mDrawerScrimOpacity = 1.f;
 	private final Paint mDrawerScrimPaint = new Paint();
 
-	private final ViewDragHelper mDragger;
-	private final ViewDragCallback mDragCallback;
+	private final DrawerDragHelper mDragger;
+	private final DragCallback mDragCallback;
+	private boolean mPredictDrag;
+	private boolean mUnbufferedDrag;
+	private int mNestedScrollAxes;
+	private boolean mNestedDragging;
+	private float mNestedFlingVelocity;
+	private final ScrollerCompat mSettleScroller;
+	private final DrawerSpring mSpring = new DrawerSpring();
+	private long mSpringFrameTime;
+	private int mSettleMode;
+	private boolean mSettling;
+	/**
+	 * Settle stopped by a touch on the bottom bar, drawer is reported as
+	 * settling until the touch either drags it or releases it.
+	 */
+	private boolean mSettleHeld;
+	private float mFlingDeceleration;
 	private int mDrawerState;
 	private boolean mInLayout;
 	private boolean mFirstLayout = true;
@@ -95,11 +259,167 @@ public class BottomBarDrawerLayout extends ViewGroup {
 	private float mInitialMotionY;
 
 	private Drawable mShadow;
+	private final int mShadowFadeDistance;
+
+	private int mHardwareLayers = HARDWARE_LAYERS_NONE;
+	private int mActiveHardwareLayers = HARDWARE_LAYERS_NONE;
+	private HardwareLayersListener mHardwareLayersListener;
+	private int mDrawerLayerType;
+	private int mContentLayerType;
+	private boolean mContentLayered;
+
+	private int mDrawerBodyId = NO_ID;
+	private View mDrawerBody;
+	private boolean mDrawerBodyCollapsed;
+	private int mDrawerBodyLayout;
+	private boolean mDrawerBodyInflated;
+	private boolean mInflateDrawerBodyWhenIdle;
+	private boolean mInflateDrawerBodyInBackground;
+	private DrawerBodyInflation mDrawerBodyInflation;
+	/**
+	 * Background inflation is scheduled, running or failed, body inflated on
+	 * the UI thread meanwhile is reported as a fallback.
+	 */
+	private boolean mDrawerBodyInflationPending;
+	private DrawerBodyInflationListener mDrawerBodyInflationListener;
+	private int mDrawerBodyReleaseDelay = -1;
+	private boolean mDrawerBodyReleaseScheduled;
+	private SparseArray<Parcelable> mDrawerBodyState;
+	private boolean mReleaseDrawerBodyOnTrimMemory;
+	private ComponentCallbacks2 mTrimMemoryCallbacks;
+
+	private boolean mSnapshotDrawer;
+	private Bitmap mDrawerSnapshot;
+	private Canvas mDrawerSnapshotCanvas;
+	private boolean mDrawerSnapshotValid;
+	private final Paint mDrawerSnapshotPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+	private int mScrimMode = SCRIM_MODE_DRAW;
+	private final Paint mContentLayerPaint = new Paint();
+	private int mContentLayerScrimStep = -1;
+
+	/**
+	 * Layer scrim filters for each opacity step, built once per scrim color
+	 * so moving the drawer doesn't allocate
+	 */
+	private PorterDuffColorFilter[] mContentLayerScrimFilters;
 
 	private DrawerListener mListener;
 
+	/**
+	 * Copy-on-write, dispatch iterates over a snapshot of the array without any
+	 * allocation even if listeners are added or removed from a callback.
+	 */
+	private DrawerListener[] mListeners = NO_LISTENERS;
+
+	/**
+	 * Registered thresholds sorted in ascending order with their listeners at the
+	 * same index. Copy-on-write, like the drawer listeners.
+	 */
+	private float[] mThresholds = NO_THRESHOLDS;
+	private DrawerThresholdListener[] mThresholdListeners = NO_THRESHOLD_LISTENERS;
+
+	private boolean mCoalesceSlideEvents;
+	private boolean mSlideDispatchPending;
+	private View mPendingSlideDrawer;
+	private float mPendingSlideOffset;
+	private final Runnable mDispatchSlideRunnable = new Runnable() {
+		@Override
+		public void run() {
+			flushPendingDrawerSlide();
+		}
+	};
+
+	private final MessageQueue.IdleHandler mInflateDrawerBodyIdleHandler = new MessageQueue.IdleHandler() {
+		@Override
+		public boolean queueIdle() {
+			ensureDrawerBodyInflated();
+			return false;
+		}
+	};
+
+	private final Runnable mReleaseDrawerBodyRunnable = new Runnable() {
+		@Override
+		public void run() {
+			mDrawerBodyReleaseScheduled = false;
+			releaseDrawerBody();
+		}
+	};
+
+	/**
+	 * Posted on attach, so it runs after the first frame is drawn
+	 */
+	private final Runnable mScheduleDrawerBodyInflationRunnable = new Runnable() {
+		@Override
+		public void run() {
+			if (!needsDrawerBodyInflation()) {
+				return;
+			}
+
+			if (mInflateDrawerBodyInBackground) {
+				startDrawerBodyInflation();
+			} else {
+				Looper.myQueue().addIdleHandler(mInflateDrawerBodyIdleHandler);
+			}
+		}
+	};
+
+	/**
+	 * View properties interpolated with the drawer offset, one binding per index.
+	 */
+	private View[] mBindingViews = new View[0];
+	private int[] mBindingProperties = new int[0];
+	private float[] mBindingClosedValues = new float[0];
+	private float[] mBindingOpenedValues = new float[0];
+	private int mBindingCount;
+
+	/**
+	 * Snap anchors as configured - offsets and visible drawer heights.
+	 */
+	private float[] mSnapAnchorOffsets = new float[0];
+	private int[] mSnapAnchorHeights = new int[0];
+
+	/**
+	 * Snap anchors resolved for the drawer height as sorted offsets, always
+	 * including closed and opened state.
+	 */
+	private float[] mSnapOffsets;
+	private int mSnapOffsetsDrawerHeight = -1;
+
+	private float mDragStartOffset;
+
+	private final Rect mDirtyRect = new Rect();
+
 	private boolean mBottomBarTouched;
 
+	/**
+	 * Touch targets kept in sync with the drawer position, so a touch is
+	 * classified without searching the children
+	 */
+	private final Rect mBarHitRect = new Rect();
+	private final Rect mScrimTapRect = new Rect();
+
+	/**
+	 * Children by role, so that hot paths (layout, drag callbacks, accessibility)
+	 * don't have to scan and compare ids. Rebuilt lazily whenever a child is
+	 * added/removed or an indexed child changes its id.
+	 */
+	private View mContentView;
+	private View mDrawerView;
+	private int mIndexedChildCount = -1;
+
+	/**
+	 * Cached result of the drawer opacity test used for clipping the content.
+	 * Valid until next layout or child change, or until the background of the
+	 * drawer (or of its child that made it opaque) is replaced.
+	 */
+	private boolean mDrawerOpacityValid;
+	private int mDrawerOpaqueInset;
+	private Drawable mOpacityDrawerBackground;
+	private View mOpacityChild;
+	private Drawable mOpacityChildBackground;
+	private int mOpacityDrawerScrollY;
+
 	/**
 	 * Listener for monitoring events about drawer.
 	 */
@@ -142,6 +462,94 @@ public class BottomBarDrawerLayout extends ViewGroup {
 		public void onDrawerStateChanged(int newState);
 	}
 
+	/**
+	 * Listener for the lifecycle of hardware layers used while the drawer
+	 * moves.
+	 * 
+	 * @see BottomBarDrawerLayout#setHardwareLayers(int)
+	 */
+	public interface HardwareLayersListener {
+		/**
+		 * Called when the drawer (and optionally content) view is promoted to
+		 * a hardware layer at the start of drag or settle, or released from it
+		 * once the drawer is idle again.
+		 * 
+		 * @param drawerView
+		 *            The drawer view
+		 * @param enabled
+		 *            True if the layers were just created, false if released
+		 */
+		public void onDrawerHardwareLayersChanged(View drawerView, boolean enabled);
+	}
+
+	/**
+	 * Listener for drawer offset crossing registered thresholds.
+	 * 
+	 * @see BottomBarDrawerLayout#addDrawerThreshold(float, DrawerThresholdListener)
+	 */
+	public interface DrawerThresholdListener {
+		/**
+		 * Called once each time the drawer offset crosses the threshold. Offset
+		 * is above threshold when it is greater than the threshold.
+		 * 
+		 * @param drawerView
+		 *            The child view that was moved
+		 * @param threshold
+		 *            The threshold that was crossed
+		 * @param opening
+		 *            True if the offset moved above the threshold, false if it
+		 *            moved to or below it
+		 */
+		public void onDrawerThresholdCrossed(View drawerView, float threshold, boolean opening);
+	}
+
+	/**
+	 * Listener for inflation of the drawer body layout, meant for tuning when
+	 * the body is inflated.
+	 * 
+	 * @see BottomBarDrawerLayout#setDrawerBodyLayout(int)
+	 */
+	public interface DrawerBodyInflationListener {
+		/**
+		 * Called on the UI thread once the drawer body layout is inflated and
+		 * attached.
+		 * 
+		 * @param drawerBody
+		 *            The drawer body the layout was inflated into
+		 * @param inflationTime
+		 *            Time spent inflating in milliseconds, on the background
+		 *            thread if the body was inflated in background
+		 * @param fallback
+		 *            True if the body was needed while background inflation
+		 *            was pending or after it failed, and was inflated on the
+		 *            UI thread. Inflation after the body content was
+		 *            released is not a fallback
+		 */
+		public void onDrawerBodyInflated(View drawerBody, long inflationTime, boolean fallback);
+	}
+
+	/**
+	 * Stub/no-op implementations of all methods of {@link DrawerListener}.
+	 * Override this if you only care about a few of the available callback methods.
+	 */
+	public static abstract class SimpleDrawerListener implements DrawerListener {
+		@Override
+		public void onDrawerSlide(View drawerView, float slideOffset) {
+		}
+
+		@Override
+		public void onDrawerOpened(View drawerView) {
+		}
+
+		@Override
+		public void onDrawerClosed(View drawerView) {
+		}
+
+		@Override
+		public void onDrawerStateChanged(int newState) {
+		}
+	}
+
 	public BottomBarDrawerLayout(Context context) {
 		this(context, null);
 	}
@@ -158,14 +566,37 @@ public class BottomBarDrawerLayout extends ViewGroup {
 
 		final TypedArray typedArray = context.obtainStyledAttributes(attrs, R.styleable.BottomBarDrawerLayout, defStyle, 0);
 		mVisiblePartHeight = typedArray.getDimensionPixelSize(R.styleable.BottomBarDrawerLayout_bottomBarHeight, -1);
+		mHardwareLayers = typedArray.getInt(R.styleable.BottomBarDrawerLayout_hardwareLayers, HARDWARE_LAYERS_NONE);
+		mScrimMode = typedArray.getInt(R.styleable.BottomBarDrawerLayout_scrimMode, SCRIM_MODE_DRAW);
+		mSnapshotDrawer = typedArray.getBoolean(R.styleable.BottomBarDrawerLayout_snapshotDrawer, false);
+		mSettleMode = typedArray.getInt(R.styleable.BottomBarDrawerLayout_settleMode, SETTLE_MODE_SCROLLER);
+		mSpring.setStiffness(typedArray.getFloat(R.styleable.BottomBarDrawerLayout_springStiffness, DrawerSpring.DEFAULT_STIFFNESS));
+		mSpring.setDampingRatio(typedArray.getFloat(R.styleable.BottomBarDrawerLayout_springDampingRatio, DrawerSpring.DEFAULT_DAMPING_RATIO));
+		mDrawerBodyId = typedArray.getResourceId(R.styleable.BottomBarDrawerLayout_drawerBody, NO_ID);
+		mDrawerBodyLayout = typedArray.getResourceId(R.styleable.BottomBarDrawerLayout_drawerBodyLayout, 0);
+		mInflateDrawerBodyWhenIdle = typedArray.getBoolean(R.styleable.BottomBarDrawerLayout_inflateDrawerBodyWhenIdle, true);
+		mInflateDrawerBodyInBackground = typedArray.getBoolean(R.styleable.BottomBarDrawerLayout_inflateDrawerBodyInBackground, false);
+		mDrawerBodyReleaseDelay = typedArray.getInt(R.styleable.BottomBarDrawerLayout_releaseDrawerBodyDelay, -1);
+		mReleaseDrawerBodyOnTrimMemory = typedArray.getBoolean(R.styleable.BottomBarDrawerLayout_releaseDrawerBodyOnTrimMemory, false);
+		mCoalesceSlideEvents = typedArray.getBoolean(R.styleable.BottomBarDrawerLayout_coalesceSlideEvents, false);
+		mPredictDrag = typedArray.getBoolean(R.styleable.BottomBarDrawerLayout_predictDrag, false);
+		mUnbufferedDrag = typedArray.getBoolean(R.styleable.BottomBarDrawerLayout_unbufferedDrag, false);
+		final int snapAnchorsId = typedArray.getResourceId(R.styleable.BottomBarDrawerLayout_snapAnchors, 0);
+		if (snapAnchorsId != 0) {
+			readSnapAnchors(snapAnchorsId);
+		}
 		typedArray.recycle();
 
-		mDragCallback = new ViewDragCallback();
+		mDragCallback = new DragCallback();
 
-		mDragger = ViewDragHelper.create(this, 0.5f, mDragCallback);
-		mDragger.setEdgeTrackingEnabled(ViewDragHelper.DIRECTION_VERTICAL);
+		mDragger = new DrawerDragHelper(context, mDragCallback);
 		mDragger.setMinVelocity(minVel);
-		mDragCallback.setDragger(mDragger);
+		mShadowFadeDistance = (int) (SHADOW_FADE_DISTANCE * density + 0.5f);
+		setPredictDrag(mPredictDrag);
+
+		mSettleScroller = ScrollerCompat.create(context, sSettleInterpolator);
+		mFlingDeceleration = DEFAULT_FLING_DECELERATION * density;
+		mSpring.setRestThresholds(0.5f, SPRING_REST_VELOCITY * density);
 		
 		final ViewConfiguration configuration = ViewConfiguration.get(context);
 		final int touchSlop = configuration.getScaledTouchSlop();
@@ -190,8 +621,15 @@ public class BottomBarDrawerLayout extends ViewGroup {
 		 * They're probably nuts, but we might want to consider registering
 		 * callbacks, setting states, etc. properly.
 		 */
+		final int oldShadowHeight = mShadow != null ? mShadow.getIntrinsicHeight() : 0;
 		mShadow = shadowDrawable;
-		invalidate();
+		final int shadowHeight = mShadow != null ? mShadow.getIntrinsicHeight() : 0;
+
+		final View drawerView = findDrawer();
+		if (drawerView != null) {
+			final int top = drawerView.getTop();
+			invalidate(drawerView.getLeft(), top - Math.max(oldShadowHeight, shadowHeight), drawerView.getRight(), top);
+		}
 	}
 	
 	/**
@@ -207,116 +645,1415 @@ public class BottomBarDrawerLayout extends ViewGroup {
 	}
 	
 	/**
-	 * Set a color to use for the scrim that obscures primary content while a
-	 * drawer is open.
+	 * Set the part of the drawer below the bottom bar. While the drawer is
+	 * closed and idle only the bar is on screen, the body is then made
+	 * invisible so it is excluded from drawing and accessibility traversal.
+	 * It is made visible again as soon as a drag or settle begins.
 	 * 
-	 * @param color
-	 *            Color to use in 0xAARRGGBB format.
+	 * @param drawerBody
+	 *            Descendant of the drawer view below the bottom bar, or null
 	 */
-	public void setContentScrimColor(int color) {
-		mContentScrimColor = color;
-		invalidate();
+	public void setDrawerBody(View drawerBody) {
+		expandDrawerBody();
+		mDrawerBodyId = drawerBody != null ? drawerBody.getId() : NO_ID;
+		mDrawerBody = drawerBody;
+		updateDrawerBody();
 	}
 
 	/**
-	 * Set a color to use for the scrim that obscures drawer content while a
-	 * drawer is opening.
+	 * Set the part of the drawer below the bottom bar.
 	 * 
-	 * @param color
-	 *            Color to use in 0xAARRGGBB format.
+	 * @param id
+	 *            Id of a descendant of the drawer view below the bottom bar
+	 * @see #setDrawerBody(View)
 	 */
-	public void setDrawerScrimColor(int color) {
-		mDrawerScrimColor = color;
-		invalidate();
+	public void setDrawerBody(int id) {
+		expandDrawerBody();
+		mDrawerBodyId = id;
+		mDrawerBody = null;
+		updateDrawerBody();
 	}
-	
+
 	/**
-	 * Set a listener to be notified of drawer events.
+	 * Set a layout inflated into the drawer body on demand. Drawer then only
+	 * needs the bottom bar and an empty body container at startup, the body
+	 * content is inflated on first drag or open, or earlier when the main
+	 * thread is idle after the first frame if
+	 * {@link #setInflateDrawerBodyWhenIdle(boolean)} is enabled.
 	 * 
-	 * @param listener
-	 *            Listener to notify when drawer events occur
-	 * @see DrawerListener
+	 * @param resId
+	 *            Layout resource inflated into the drawer body, which must be a
+	 *            {@link ViewGroup}, or 0 for none
+	 * @see #setDrawerBody(View)
 	 */
-	public void setDrawerListener(DrawerListener listener) {
-		mListener = listener;
+	public void setDrawerBodyLayout(int resId) {
+		if (mDrawerBodyInflated) {
+			throw new IllegalStateException("Drawer body is already inflated");
+		}
+		mDrawerBodyLayout = resId;
+		updateTrimMemoryCallbacks();
 	}
-	
+
 	/**
-	 * Check if the drawer view is currently visible on-screen. The drawer
-	 * may be dragged or fully extended.
-	 * 
-	 * @return true if the drawer is visible on-screen
-	 * @see #isDrawerOpen()
+	 * @return layout resource inflated into the drawer body, or 0 if not set
+	 * @see #setDrawerBodyLayout(int)
 	 */
-	public boolean isDrawerVisible(){
-		final View drawer = findDrawer();
-		if(drawer != null && isDrawerVisible(drawer)){
-			return true;
-		}
-		return false;
+	public int getDrawerBodyLayout() {
+		return mDrawerBodyLayout;
 	}
-	
-	private boolean isDrawerVisible(View drawer) {
-		if (isContentView(drawer)) {
-			throw new IllegalArgumentException("View " + drawer + " is not a drawer");
-		}
-		return ((LayoutParams) drawer.getLayoutParams()).onScreen > 0;
+
+	/**
+	 * Set whether the drawer body layout is inflated as soon as the main thread
+	 * is idle after the first frame instead of waiting for the first drag or
+	 * open. Enabled by default. Must be set before the layout is attached.
+	 * 
+	 * @param inflateWhenIdle
+	 *            true to inflate the body layout when idle
+	 * @see #setDrawerBodyLayout(int)
+	 */
+	public void setInflateDrawerBodyWhenIdle(boolean inflateWhenIdle) {
+		mInflateDrawerBodyWhenIdle = inflateWhenIdle;
 	}
 
-    /**
-     * Check if the drawer view is currently in an open state.
-     * To be considered "open" the drawer must have settled into its fully
-     * visible state. To check for partial visibility use
-     * {@link #isDrawerVisible()}.
-     *
-     * @return true if the drawer view is in an open state
-     * @see #isDrawerVisible()
-     */
-	public boolean isDrawerOpen(){
-		final View drawer = findDrawer();
-		if(drawer != null && isDrawerOpen(drawer)){
-			return true;
-		}
-		return false;
+	/**
+	 * @return true if the drawer body layout is inflated when idle
+	 * @see #setInflateDrawerBodyWhenIdle(boolean)
+	 */
+	public boolean isInflateDrawerBodyWhenIdle() {
+		return mInflateDrawerBodyWhenIdle;
 	}
-	
-    private boolean isDrawerOpen(View drawer) {
-        if (isContentView(drawer)) {
-            throw new IllegalArgumentException("View " + drawer + " is not a drawer");
-        }
-        return ((LayoutParams) drawer.getLayoutParams()).knownOpen;
-    }
 
 	/**
- 	 * Should be called whenever a ViewDragHelper's state changes.
+	 * Set whether the drawer body layout is inflated on a background thread
+	 * once the first frame is drawn. Inflated views are attached on the UI
+	 * thread. If the body is needed earlier, e.g. the drawer is opened before
+	 * the background inflation finishes, it is inflated on the UI thread and
+	 * the background result is dropped. Views of the layout must not need a
+	 * {@link Looper} in their constructors, body is inflated on the UI thread
+	 * when background inflation fails. Must be set before the layout is
+	 * attached.
+	 * 
+	 * @param inBackground
+	 *            true to inflate the body layout on a background thread
+	 * @see #setDrawerBodyInflationListener(DrawerBodyInflationListener)
 	 */
-	void updateDrawerState(int activeState, View activeDrawer) {
-		final int state = mDragger.getViewDragState();
+	public void setInflateDrawerBodyInBackground(boolean inBackground) {
+		mInflateDrawerBodyInBackground = inBackground;
+	}
 
-		if (activeDrawer != null && activeState == STATE_IDLE) {
-			final LayoutParams lp = (LayoutParams) activeDrawer.getLayoutParams();
-			if (lp.onScreen == 0) {
-				dispatchOnDrawerClosed(activeDrawer);
-			} else if (lp.onScreen == 1) {
-				dispatchOnDrawerOpened(activeDrawer);
-			}
-		}
+	/**
+	 * @return true if the drawer body layout is inflated on a background thread
+	 * @see #setInflateDrawerBodyInBackground(boolean)
+	 */
+	public boolean isInflateDrawerBodyInBackground() {
+		return mInflateDrawerBodyInBackground;
+	}
 
-		if (state != mDrawerState) {
-			mDrawerState = state;
+	/**
+	 * Set a listener notified when the drawer body layout is inflated, with
+	 * the time spent and whether the background inflation was missed.
+	 * 
+	 * @param listener
+	 *            Listener to notify, or null
+	 */
+	public void setDrawerBodyInflationListener(DrawerBodyInflationListener listener) {
+		mDrawerBodyInflationListener = listener;
+	}
 
-			if (mListener != null) {
-				mListener.onDrawerStateChanged(state);
+	/**
+	 * Set how long the drawer has to stay closed and idle before the content
+	 * inflated from the drawer body layout is discarded to free memory. It is
+	 * inflated again on next drag or open, view state of the discarded content
+	 * is restored then.
+	 * 
+	 * @param delay
+	 *            Delay in milliseconds, or -1 to keep the body content while
+	 *            the drawer is closed
+	 * @see #setDrawerBodyLayout(int)
+	 * @see #setReleaseDrawerBodyOnTrimMemory(boolean)
+	 */
+	public void setDrawerBodyReleaseDelay(int delay) {
+		mDrawerBodyReleaseDelay = delay;
+		cancelDrawerBodyRelease();
+		updateDrawerBody();
+	}
+
+	/**
+	 * @return delay after which content of the closed drawer body is discarded,
+	 *         or -1 if it is not
+	 * @see #setDrawerBodyReleaseDelay(int)
+	 */
+	public int getDrawerBodyReleaseDelay() {
+		return mDrawerBodyReleaseDelay;
+	}
+
+	/**
+	 * Set whether the content inflated from the drawer body layout is
+	 * discarded when the system asks to trim memory while the drawer is
+	 * closed. Disabled by default. Content is inflated again on next drag or
+	 * open, view state of the discarded content is restored then. Has no
+	 * effect before API 14.
+	 * 
+	 * @param releaseOnTrimMemory
+	 *            true to discard the closed drawer body content on memory trim
+	 * @see #setDrawerBodyLayout(int)
+	 */
+	public void setReleaseDrawerBodyOnTrimMemory(boolean releaseOnTrimMemory) {
+		mReleaseDrawerBodyOnTrimMemory = releaseOnTrimMemory;
+		updateTrimMemoryCallbacks();
+	}
+
+	/**
+	 * @return true if the closed drawer body content is discarded on memory trim
+	 * @see #setReleaseDrawerBodyOnTrimMemory(boolean)
+	 */
+	public boolean isReleaseDrawerBodyOnTrimMemory() {
+		return mReleaseDrawerBodyOnTrimMemory;
+	}
+
+	private void scheduleDrawerBodyRelease() {
+		if (mDrawerBodyReleaseScheduled || mDrawerBodyReleaseDelay < 0 || !mDrawerBodyInflated
+				|| mDrawerBodyLayout == 0) {
+			return;
+		}
+		mDrawerBodyReleaseScheduled = true;
+		postDelayed(mReleaseDrawerBodyRunnable, mDrawerBodyReleaseDelay);
+	}
+
+	private void cancelDrawerBodyRelease() {
+		if (mDrawerBodyReleaseScheduled) {
+			mDrawerBodyReleaseScheduled = false;
+			removeCallbacks(mReleaseDrawerBodyRunnable);
+		}
+	}
+
+	/**
+	 * Discards content inflated from the drawer body layout if the drawer is
+	 * collapsed, keeping its view state for the next inflation.
+	 */
+	private void releaseDrawerBody() {
+		final View drawerView = findDrawer();
+		if (!mDrawerBodyInflated || mDrawerBodyLayout == 0 || drawerView == null || !isDrawerCollapsed(drawerView)) {
+			return;
+		}
+
+		final ViewGroup drawerBody = getDrawerBodyContainer();
+		final SparseArray<Parcelable> state = new SparseArray<Parcelable>();
+		drawerBody.saveHierarchyState(state);
+		mDrawerBodyState = state;
+		drawerBody.removeAllViews();
+		mDrawerBodyInflated = false;
+		mDrawerOpacityValid = false;
+	}
+
+	/**
+	 * Body content is saved apart from the view hierarchy, recreated layout
+	 * inflates it lazily, so the content doesn't exist yet when the hierarchy
+	 * state is restored.
+	 * 
+	 * @return view state of the body content, null if there's no body layout
+	 */
+	private SparseArray<Parcelable> saveDrawerBodyState() {
+		if (mDrawerBodyLayout == 0) {
+			return null;
+		}
+		if (!mDrawerBodyInflated) {
+			// Released content, or inflation still pending after restore
+			return mDrawerBodyState;
+		}
+
+		final SparseArray<Parcelable> state = new SparseArray<Parcelable>();
+		getDrawerBodyContainer().saveHierarchyState(state);
+		return state;
+	}
+
+	private boolean needsDrawerBodyInflation() {
+		return mDrawerBodyLayout != 0 && !mDrawerBodyInflated;
+	}
+
+	private ViewGroup getDrawerBodyContainer() {
+		final View drawerBody = getDrawerBody();
+		if (!(drawerBody instanceof ViewGroup)) {
+			throw new IllegalStateException("Drawer body layout requires a drawer body view group");
+		}
+		return (ViewGroup) drawerBody;
+	}
+
+	/**
+	 * Inflates the drawer body layout on the UI thread unless it is already
+	 * inflated. Pending background inflation is dropped.
+	 */
+	void ensureDrawerBodyInflated() {
+		if (!needsDrawerBodyInflation()) {
+			return;
+		}
+
+		final ViewGroup drawerBody = getDrawerBodyContainer();
+		cancelDrawerBodyInflation();
+		final long start = SystemClock.uptimeMillis();
+		LayoutInflater.from(getContext()).inflate(mDrawerBodyLayout, drawerBody, true);
+		onDrawerBodyInflated(drawerBody, SystemClock.uptimeMillis() - start, mDrawerBodyInflationPending);
+	}
+
+	private void onDrawerBodyInflated(ViewGroup drawerBody, long inflationTime, boolean fallback) {
+		mDrawerBodyInflated = true;
+		mDrawerBodyInflationPending = false;
+		mDrawerOpacityValid = false;
+		if (mDrawerBodyState != null) {
+			drawerBody.restoreHierarchyState(mDrawerBodyState);
+			mDrawerBodyState = null;
+		}
+		if (mDrawerBodyInflationListener != null) {
+			mDrawerBodyInflationListener.onDrawerBodyInflated(drawerBody, inflationTime, fallback);
+		}
+	}
+
+	private void startDrawerBodyInflation() {
+		if (mDrawerBodyInflation != null) {
+			return;
+		}
+
+		mDrawerBodyInflation = new DrawerBodyInflation(getDrawerBodyContainer(), mDrawerBodyLayout);
+		final Thread thread = new Thread(mDrawerBodyInflation, TAG + " body inflation");
+		thread.start();
+	}
+
+	private void cancelDrawerBodyInflation() {
+		if (mDrawerBodyInflation != null) {
+			mDrawerBodyInflation.mCancelled = true;
+			mDrawerBodyInflation = null;
+		}
+	}
+
+	/**
+	 * Attaches views inflated in background unless they are not needed anymore.
+	 */
+	void attachDrawerBodyInflation(DrawerBodyInflation inflation) {
+		if (inflation.mCancelled || inflation != mDrawerBodyInflation) {
+			return;
+		}
+
+		mDrawerBodyInflation = null;
+		if (inflation.mView == null) {
+			// Failed in background, inflated on the UI thread once needed
+			Log.w(TAG, "Failed to inflate drawer body in background", inflation.mError);
+			return;
+		}
+
+		if (!needsDrawerBodyInflation() || getDrawerBody() != inflation.mDrawerBody) {
+			return;
+		}
+
+		inflation.mDrawerBody.addView(inflation.mView);
+		onDrawerBodyInflated(inflation.mDrawerBody, inflation.mInflationTime, false);
+	}
+
+	/**
+	 * @return the part of the drawer below the bottom bar, or null if not set
+	 * @see #setDrawerBody(View)
+	 */
+	public View getDrawerBody() {
+		if (mDrawerBody == null && mDrawerBodyId != NO_ID) {
+			final View drawerView = findDrawer();
+			if (drawerView != null) {
+				mDrawerBody = drawerView.findViewById(mDrawerBodyId);
+			}
+		}
+		return mDrawerBody;
+	}
+
+	/**
+	 * Set a color to use for the scrim that obscures primary content while a
+	 * drawer is open.
+	 * 
+	 * @param color
+	 *            Color to use in 0xAARRGGBB format.
+	 */
+	public void setContentScrimColor(int color) {
+		mContentScrimColor = color;
+		mContentLayerScrimStep = -1;
+		mContentLayerScrimFilters = null;
+		updateContentLayer();
+		if (mContentScrimOpacity > 0) {
+			invalidate(0, 0, getWidth(), getContentClipBottom());
+		}
+	}
+
+	/**
+	 * Set a color to use for the scrim that obscures drawer content while a
+	 * drawer is opening.
+	 * 
+	 * @param color
+	 *            Color to use in 0xAARRGGBB format.
+	 */
+	public void setDrawerScrimColor(int color) {
+		mDrawerScrimColor = color;
+		final View drawerView = findDrawer();
+		if (mDrawerScrimOpacity > 0 && drawerView != null) {
+			invalidate(0, drawerView.getTop() + mVisiblePartHeight, getWidth(), drawerView.getBottom());
+		}
+	}
+	
+	/**
+	 * Set how the content scrim is rendered. With {@link #SCRIM_MODE_LAYER}
+	 * content view is kept in a hardware layer while the scrim is visible and
+	 * the scrim is applied as the layer's color filter, so neither the layout
+	 * nor the content needs to redraw when the drawer moves. Content is expected
+	 * to be opaque in this mode as transparent pixels are not dimmed. Falls back
+	 * to {@link #SCRIM_MODE_DRAW} if the window is not hardware accelerated.
+	 * 
+	 * <p>Drawer scrim is always drawn, it must leave the bottom bar unobscured.</p>
+	 * 
+	 * @param scrimMode
+	 *            {@link #SCRIM_MODE_DRAW} or {@link #SCRIM_MODE_LAYER}
+	 */
+	public void setScrimMode(int scrimMode) {
+		if (mScrimMode == scrimMode) {
+			return;
+		}
+
+		mScrimMode = scrimMode;
+		updateContentLayer();
+		if (mContentScrimOpacity > 0) {
+			invalidate(0, 0, getWidth(), getContentClipBottom());
+		}
+	}
+
+	/**
+	 * @return how the content scrim is rendered
+	 * @see #setScrimMode(int)
+	 */
+	public int getScrimMode() {
+		return mScrimMode;
+	}
+
+	/**
+	 * Set which views are promoted to a hardware layer while the drawer is
+	 * being dragged or is settling. Layered views are only composited during
+	 * the slide instead of being redrawn every frame. Layers are released as
+	 * soon as the drawer is idle again. Has no effect if the window is not
+	 * hardware accelerated.
+	 * 
+	 * @param layers
+	 *            Combination of {@link #HARDWARE_LAYERS_DRAWER} and
+	 *            {@link #HARDWARE_LAYERS_CONTENT}, or
+	 *            {@link #HARDWARE_LAYERS_NONE}
+	 * @see #setHardwareLayersListener(HardwareLayersListener)
+	 */
+	public void setHardwareLayers(int layers) {
+		if (mHardwareLayers == layers) {
+			return;
+		}
+
+		disableHardwareLayers();
+		mHardwareLayers = layers;
+		if (mDrawerState != STATE_IDLE) {
+			enableHardwareLayers();
+		}
+	}
+
+	/**
+	 * @return views promoted to a hardware layer while the drawer moves
+	 * @see #setHardwareLayers(int)
+	 */
+	public int getHardwareLayers() {
+		return mHardwareLayers;
+	}
+
+	/**
+	 * Set a listener notified when views are promoted to a hardware layer and
+	 * released from it.
+	 * 
+	 * @param listener
+	 *            Listener to notify, or null
+	 * @see #setHardwareLayers(int)
+	 */
+	public void setHardwareLayersListener(HardwareLayersListener listener) {
+		mHardwareLayersListener = listener;
+	}
+
+	/**
+	 * Set whether the drawer is rendered from a bitmap snapshot while it is
+	 * being dragged or is settling. Snapshot is taken when the drawer leaves
+	 * {@link #STATE_IDLE}, each frame of the slide then draws just the bitmap
+	 * and live rendering resumes once the drawer is idle again. Changes of
+	 * drawer content during the slide are not visible until then. Helps
+	 * software rendered or very complex drawers. Snapshot bitmap is reused
+	 * across gestures and released when memory is trimmed.
+	 * 
+	 * @param snapshotDrawer
+	 *            true to draw a snapshot of the moving drawer
+	 */
+	public void setSnapshotDrawer(boolean snapshotDrawer) {
+		if (mSnapshotDrawer == snapshotDrawer) {
+			return;
+		}
+
+		mSnapshotDrawer = snapshotDrawer;
+		if (!snapshotDrawer) {
+			releaseDrawerSnapshot();
+		}
+		updateTrimMemoryCallbacks();
+	}
+
+	/**
+	 * @return true if the moving drawer is drawn from a snapshot
+	 * @see #setSnapshotDrawer(boolean)
+	 */
+	public boolean isSnapshotDrawer() {
+		return mSnapshotDrawer;
+	}
+
+	/**
+	 * Draws the drawer into the snapshot bitmap, which is allocated again only
+	 * if the drawer size changes. Drawer with pending layout, e.g. with just
+	 * inflated body, is left to live rendering.
+	 */
+	private void captureDrawerSnapshot() {
+		mDrawerSnapshotValid = false;
+		final View drawerView = findDrawer();
+		if (!mSnapshotDrawer || drawerView == null || drawerView.getVisibility() != VISIBLE
+				|| drawerView.isLayoutRequested()) {
+			return;
+		}
+
+		final int width = drawerView.getWidth();
+		final int height = drawerView.getHeight();
+		if (width <= 0 || height <= 0) {
+			return;
+		}
+
+		if (mDrawerSnapshot == null || mDrawerSnapshot.getWidth() != width || mDrawerSnapshot.getHeight() != height) {
+			releaseDrawerSnapshot();
+			try {
+				mDrawerSnapshot = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+			} catch (OutOfMemoryError e) {
+				Log.w(TAG, "Failed to allocate drawer snapshot", e);
+				return;
+			}
+			mDrawerSnapshotCanvas = new Canvas(mDrawerSnapshot);
+		} else {
+			mDrawerSnapshot.eraseColor(0);
+		}
+
+		final int restoreCount = mDrawerSnapshotCanvas.save();
+		mDrawerSnapshotCanvas.translate(-drawerView.getScrollX(), -drawerView.getScrollY());
+		drawerView.draw(mDrawerSnapshotCanvas);
+		mDrawerSnapshotCanvas.restoreToCount(restoreCount);
+		mDrawerSnapshotValid = true;
+	}
+
+	/**
+	 * Draws the snapshot with the alpha and transformation the drawer itself
+	 * would be drawn with, e.g. the ones set by offset bindings.
+	 */
+	private void drawDrawerSnapshot(Canvas canvas, View drawerView) {
+		final int restoreCount = canvas.save();
+		canvas.translate(drawerView.getLeft(), drawerView.getTop());
+		int alpha = 255;
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+			canvas.concat(drawerView.getMatrix());
+			alpha = Math.round(drawerView.getAlpha() * 255);
+		}
+		mDrawerSnapshotPaint.setAlpha(alpha);
+		canvas.drawBitmap(mDrawerSnapshot, 0, 0, mDrawerSnapshotPaint);
+		canvas.restoreToCount(restoreCount);
+	}
+
+	private void releaseDrawerSnapshot() {
+		mDrawerSnapshotValid = false;
+		if (mDrawerSnapshot != null) {
+			mDrawerSnapshot.recycle();
+			mDrawerSnapshot = null;
+			mDrawerSnapshotCanvas = null;
+			final View drawerView = findDrawer();
+			if (drawerView != null) {
+				invalidate(drawerView.getLeft(), drawerView.getTop(), drawerView.getRight(), drawerView.getBottom());
+			}
+		}
+	}
+
+	/**
+	 * Set drawer offsets, besides closed and opened state, at which the drawer
+	 * settles after it is released. Released drawer snaps to the anchor nearest
+	 * to the position projected from the release velocity.
+	 * 
+	 * @param offsets
+	 *            Drawer offsets, from 0-1
+	 * @see #setSnapAnchorHeights(int...)
+	 */
+	public void setSnapAnchors(float... offsets) {
+		mSnapAnchorOffsets = offsets.clone();
+		mSnapOffsetsDrawerHeight = -1;
+	}
+
+	/**
+	 * Set visible drawer heights, besides closed and opened state, at which
+	 * the drawer settles after it is released. Heights are converted to offsets
+	 * once the drawer height is known.
+	 * 
+	 * @param heights
+	 *            Heights of the visible part of the drawer in pixels,
+	 *            including the bottom bar
+	 * @see #setSnapAnchors(float...)
+	 */
+	public void setSnapAnchorHeights(int... heights) {
+		mSnapAnchorHeights = heights.clone();
+		mSnapOffsetsDrawerHeight = -1;
+	}
+
+	/**
+	 * Set deceleration of the drawer after fling. Released drawer is projected
+	 * to come to rest with this deceleration, the projected position picks the
+	 * snap anchor and the settle animation starts at the release velocity.
+	 * Lower values let a fling travel further.
+	 * 
+	 * @param deceleration
+	 *            Deceleration in pixels per second squared
+	 */
+	public void setFlingDeceleration(float deceleration) {
+		if (deceleration <= 0) {
+			throw new IllegalArgumentException("Deceleration must be positive");
+		}
+		mFlingDeceleration = deceleration;
+	}
+
+	/**
+	 * @return deceleration of the drawer after fling in pixels per second squared
+	 * @see #setFlingDeceleration(float)
+	 */
+	public float getFlingDeceleration() {
+		return mFlingDeceleration;
+	}
+
+	/**
+	 * Set whether the dragged drawer is moved to where the finger is predicted
+	 * to be at the next frame instead of where it was last reported. This
+	 * hides part of the touch latency, the drawer edge tracks the finger more
+	 * tightly at the cost of a slight overshoot when the finger stops abruptly.
+	 * 
+	 * @param predictDrag
+	 *            true to predict finger position, false to follow the reported
+	 *            position
+	 */
+	public void setPredictDrag(boolean predictDrag) {
+		mPredictDrag = predictDrag;
+		mDragger.setPredictionTime(predictDrag ? 1.f / getRefreshRate() : 0);
+	}
+
+	/**
+	 * @return true if the dragged drawer follows the predicted finger position
+	 * @see #setPredictDrag(boolean)
+	 */
+	public boolean isPredictDrag() {
+		return mPredictDrag;
+	}
+
+	/**
+	 * Set whether touch events of gestures starting on the bottom bar are
+	 * delivered as soon as they arrive rather than batched once per frame.
+	 * Drawer then moves with every event, which lowers touch to pixel latency
+	 * of drawer drags at the cost of more touch processing. Consider
+	 * {@link #setCoalesceSlideEvents(boolean)} so listeners still run once
+	 * per frame. Only has effect on API 21 and newer.
+	 * 
+	 * @param unbufferedDrag
+	 *            true to request unbuffered dispatch for bottom bar gestures
+	 */
+	public void setUnbufferedDrag(boolean unbufferedDrag) {
+		mUnbufferedDrag = unbufferedDrag;
+	}
+
+	/**
+	 * @return true if bottom bar gestures request unbuffered dispatch
+	 * @see #setUnbufferedDrag(boolean)
+	 */
+	public boolean isUnbufferedDrag() {
+		return mUnbufferedDrag;
+	}
+
+	/**
+	 * Requests unbuffered dispatch for the rest of the gesture started by the
+	 * event. Method is looked up once, silently does nothing where it doesn't
+	 * exist.
+	 */
+	private void requestUnbufferedDispatch(MotionEvent ev) {
+		if (Build.VERSION.SDK_INT < UNBUFFERED_DISPATCH_SDK) {
+			return;
+		}
+
+		if (!sRequestUnbufferedDispatchMethodFetched) {
+			try {
+				sRequestUnbufferedDispatchMethod = View.class.getMethod("requestUnbufferedDispatch", MotionEvent.class);
+			} catch (NoSuchMethodException e) {
+				Log.i(TAG, "Failed to retrieve requestUnbufferedDispatch method", e);
+			}
+			sRequestUnbufferedDispatchMethodFetched = true;
+		}
+
+		if (sRequestUnbufferedDispatchMethod != null) {
+			try {
+				sRequestUnbufferedDispatchMethod.invoke(this, ev);
+			} catch (Exception e) {
+				Log.i(TAG, "Failed to invoke requestUnbufferedDispatch method", e);
+				sRequestUnbufferedDispatchMethod = null;
+			}
+		}
+	}
+
+	private float getRefreshRate() {
+		final WindowManager windowManager = (WindowManager) getContext().getSystemService(Context.WINDOW_SERVICE);
+		final float refreshRate = windowManager != null ? windowManager.getDefaultDisplay().getRefreshRate() : 0;
+		return refreshRate > 0 ? refreshRate : DEFAULT_REFRESH_RATE;
+	}
+
+	/**
+	 * Set how the released drawer settles to its snap anchor. Drawer can be
+	 * grabbed while settling in both modes, it continues from where it is.
+	 * Changing the mode stops drawer that is currently settling.
+	 * 
+	 * @param settleMode
+	 *            {@link #SETTLE_MODE_SCROLLER} or {@link #SETTLE_MODE_SPRING}
+	 * @see #setSpringStiffness(float)
+	 * @see #setSpringDampingRatio(float)
+	 */
+	public void setSettleMode(int settleMode) {
+		if (mSettleMode == settleMode) {
+			return;
+		}
+
+		abortSettle();
+		mSettleMode = settleMode;
+	}
+
+	/**
+	 * @return how the released drawer settles
+	 * @see #setSettleMode(int)
+	 */
+	public int getSettleMode() {
+		return mSettleMode;
+	}
+
+	/**
+	 * Set stiffness of the spring used in {@link #SETTLE_MODE_SPRING}. Stiffer
+	 * spring settles faster.
+	 * 
+	 * @param stiffness
+	 *            Spring constant per unit of mass, must be positive
+	 */
+	public void setSpringStiffness(float stiffness) {
+		mSpring.setStiffness(stiffness);
+	}
+
+	/**
+	 * @return stiffness of the settle spring
+	 * @see #setSpringStiffness(float)
+	 */
+	public float getSpringStiffness() {
+		return mSpring.getStiffness();
+	}
+
+	/**
+	 * Set damping of the spring used in {@link #SETTLE_MODE_SPRING} relative to
+	 * critical damping. Values below 1 make the drawer bounce around its snap
+	 * anchor, bounces past the opened or closed position are cut off.
+	 * 
+	 * @param dampingRatio
+	 *            Damping ratio, must be positive, 1 settles fastest without
+	 *            overshoot
+	 */
+	public void setSpringDampingRatio(float dampingRatio) {
+		mSpring.setDampingRatio(dampingRatio);
+	}
+
+	/**
+	 * @return damping ratio of the settle spring
+	 * @see #setSpringDampingRatio(float)
+	 */
+	public float getSpringDampingRatio() {
+		return mSpring.getDampingRatio();
+	}
+
+	/**
+	 * Reads anchors from an array resource. Fractions and floats are offsets,
+	 * dimensions are visible drawer heights.
+	 */
+	private void readSnapAnchors(int resId) {
+		final TypedArray anchors = getResources().obtainTypedArray(resId);
+		final int count = anchors.length();
+		float[] offsets = new float[count];
+		int[] heights = new int[count];
+		int offsetCount = 0;
+		int heightCount = 0;
+		for (int i = 0; i < count; i++) {
+			final TypedValue value = anchors.peekValue(i);
+			if (value == null) {
+				continue;
+			}
+			if (value.type == TypedValue.TYPE_DIMENSION) {
+				heights[heightCount++] = anchors.getDimensionPixelSize(i, 0);
+			} else if (value.type == TypedValue.TYPE_FRACTION) {
+				offsets[offsetCount++] = anchors.getFraction(i, 1, 1, 0.f);
+			} else {
+				offsets[offsetCount++] = anchors.getFloat(i, 0.f);
+			}
+		}
+		anchors.recycle();
+
+		final float[] snapOffsets = new float[offsetCount];
+		System.arraycopy(offsets, 0, snapOffsets, 0, offsetCount);
+		final int[] snapHeights = new int[heightCount];
+		System.arraycopy(heights, 0, snapHeights, 0, heightCount);
+		mSnapAnchorOffsets = snapOffsets;
+		mSnapAnchorHeights = snapHeights;
+		mSnapOffsetsDrawerHeight = -1;
+	}
+
+	/**
+	 * @return sorted snap offsets for current drawer height, resolved again
+	 *         only if the height or anchors changed
+	 */
+	private float[] getSnapOffsets(View drawerView) {
+		final int drawerHeight = drawerView.getHeight();
+		if (mSnapOffsets != null && mSnapOffsetsDrawerHeight == drawerHeight) {
+			return mSnapOffsets;
+		}
+
+		final float[] anchorOffsets = mSnapAnchorOffsets;
+		final int[] anchorHeights = mSnapAnchorHeights;
+		final int range = drawerHeight - mVisiblePartHeight;
+		final float[] offsets = new float[anchorOffsets.length + anchorHeights.length + 2];
+		int count = 0;
+		offsets[count++] = 0.f;
+		offsets[count++] = 1.f;
+		for (int i = 0; i < anchorOffsets.length; i++) {
+			offsets[count++] = Math.max(0.f, Math.min(anchorOffsets[i], 1.f));
+		}
+		for (int i = 0; i < anchorHeights.length; i++) {
+			final float offset = range > 0 ? (float) (anchorHeights[i] - mVisiblePartHeight) / range : 0.f;
+			offsets[count++] = Math.max(0.f, Math.min(offset, 1.f));
+		}
+		Arrays.sort(offsets);
+
+		// Drop duplicates
+		int unique = 1;
+		for (int i = 1; i < count; i++) {
+			if (offsets[i] != offsets[unique - 1]) {
+				offsets[unique++] = offsets[i];
+			}
+		}
+		final float[] snapOffsets = new float[unique];
+		System.arraycopy(offsets, 0, snapOffsets, 0, unique);
+
+		mSnapOffsets = snapOffsets;
+		mSnapOffsetsDrawerHeight = drawerHeight;
+		return snapOffsets;
+	}
+
+	/**
+	 * @return the smallest snap offset not below the offset
+	 */
+	private static float ceilSnapOffset(float[] snapOffsets, float offset) {
+		final int index = firstIndexNotBelow(snapOffsets, offset);
+		return snapOffsets[Math.min(index, snapOffsets.length - 1)];
+	}
+
+	/**
+	 * @return the greatest snap offset not above the offset
+	 */
+	private static float floorSnapOffset(float[] snapOffsets, float offset) {
+		final int index = firstIndexAbove(snapOffsets, offset) - 1;
+		return snapOffsets[Math.max(index, 0)];
+	}
+
+	private static float nearestSnapOffset(float[] snapOffsets, float offset) {
+		final float ceil = ceilSnapOffset(snapOffsets, offset);
+		final float floor = floorSnapOffset(snapOffsets, offset);
+		return Math.abs(ceil - offset) < Math.abs(offset - floor) ? ceil : floor;
+	}
+
+	/**
+	 * @return snap offset nearest to the projected offset among those past the
+	 *         current offset in fling direction, closed or opened offset if
+	 *         there is none
+	 */
+	private static float flingSnapOffset(float[] snapOffsets, float offset, float projected, boolean opening) {
+		if (opening) {
+			final int index = firstIndexAbove(snapOffsets, offset);
+			if (index == snapOffsets.length) {
+				return snapOffsets[index - 1];
+			}
+			return nearestSnapOffset(snapOffsets, Math.max(projected, snapOffsets[index]));
+		}
+
+		final int index = firstIndexNotBelow(snapOffsets, offset) - 1;
+		if (index < 0) {
+			return snapOffsets[0];
+		}
+		return nearestSnapOffset(snapOffsets, Math.min(projected, snapOffsets[index]));
+	}
+
+	/**
+	 * Set a listener to be notified of drawer events. Replaces the listener
+	 * set by previous call, listeners added by
+	 * {@link #addDrawerListener(DrawerListener)} are kept.
+	 * 
+	 * @param listener
+	 *            Listener to notify when drawer events occur
+	 * @see DrawerListener
+	 */
+	public void setDrawerListener(DrawerListener listener) {
+		if (mListener != null) {
+			removeDrawerListener(mListener);
+		}
+		mListener = listener;
+		if (listener != null) {
+			addDrawerListener(listener);
+		}
+	}
+
+	/**
+	 * Set whether {@link DrawerListener#onDrawerSlide(View, float)} is called
+	 * at most once per display frame with the latest offset, instead of once
+	 * for every drawer move. Drawer can move several times per frame on touch
+	 * screens with high sampling rate. Pending slide is always delivered before
+	 * the drawer state, opened and closed callbacks.
+	 * 
+	 * @param coalesce
+	 *            True to deliver slide events once per frame
+	 */
+	public void setCoalesceSlideEvents(boolean coalesce) {
+		if (!coalesce) {
+			flushPendingDrawerSlide();
+		}
+		mCoalesceSlideEvents = coalesce;
+	}
+
+	/**
+	 * @return true if slide events are delivered once per frame
+	 * @see #setCoalesceSlideEvents(boolean)
+	 */
+	public boolean isCoalesceSlideEvents() {
+		return mCoalesceSlideEvents;
+	}
+
+	/**
+	 * Add a listener to be notified of drawer events. Listeners are notified
+	 * in the order they were added.
+	 * 
+	 * @param listener
+	 *            Listener to notify when drawer events occur
+	 * @see #removeDrawerListener(DrawerListener)
+	 */
+	public void addDrawerListener(DrawerListener listener) {
+		if (listener == null || indexOfDrawerListener(listener) >= 0) {
+			return;
+		}
+
+		final DrawerListener[] listeners = mListeners;
+		final DrawerListener[] newListeners = new DrawerListener[listeners.length + 1];
+		System.arraycopy(listeners, 0, newListeners, 0, listeners.length);
+		newListeners[listeners.length] = listener;
+		mListeners = newListeners;
+	}
+
+	/**
+	 * Remove a listener previously added by
+	 * {@link #addDrawerListener(DrawerListener)} or
+	 * {@link #setDrawerListener(DrawerListener)}.
+	 * 
+	 * @param listener
+	 *            Listener to remove
+	 */
+	public void removeDrawerListener(DrawerListener listener) {
+		final int index = indexOfDrawerListener(listener);
+		if (index < 0) {
+			return;
+		}
+
+		if (listener == mListener) {
+			mListener = null;
+		}
+
+		final DrawerListener[] listeners = mListeners;
+		if (listeners.length == 1) {
+			mListeners = NO_LISTENERS;
+			return;
+		}
+		final DrawerListener[] newListeners = new DrawerListener[listeners.length - 1];
+		System.arraycopy(listeners, 0, newListeners, 0, index);
+		System.arraycopy(listeners, index + 1, newListeners, index, listeners.length - index - 1);
+		mListeners = newListeners;
+	}
+
+	/**
+	 * Register a listener to be notified when the drawer offset crosses the
+	 * given threshold. Unlike {@link DrawerListener#onDrawerSlide(View, float)}
+	 * the listener is called only once per crossing.
+	 * 
+	 * @param threshold
+	 *            Drawer offset, from 0-1
+	 * @param listener
+	 *            Listener to notify when the threshold is crossed
+	 * @see #removeDrawerThreshold(float, DrawerThresholdListener)
+	 */
+	public void addDrawerThreshold(float threshold, DrawerThresholdListener listener) {
+		if (listener == null) {
+			throw new IllegalArgumentException("Listener must not be null");
+		}
+
+		final float[] thresholds = mThresholds;
+		final DrawerThresholdListener[] listeners = mThresholdListeners;
+		// Insert after thresholds of the same value, keeps registration order
+		final int index = firstIndexAbove(thresholds, threshold);
+
+		final float[] newThresholds = new float[thresholds.length + 1];
+		final DrawerThresholdListener[] newListeners = new DrawerThresholdListener[listeners.length + 1];
+		System.arraycopy(thresholds, 0, newThresholds, 0, index);
+		System.arraycopy(listeners, 0, newListeners, 0, index);
+		newThresholds[index] = threshold;
+		newListeners[index] = listener;
+		System.arraycopy(thresholds, index, newThresholds, index + 1, thresholds.length - index);
+		System.arraycopy(listeners, index, newListeners, index + 1, listeners.length - index);
+		mThresholds = newThresholds;
+		mThresholdListeners = newListeners;
+	}
+
+	/**
+	 * Remove a threshold previously registered by
+	 * {@link #addDrawerThreshold(float, DrawerThresholdListener)}.
+	 * 
+	 * @param threshold
+	 *            Registered drawer offset
+	 * @param listener
+	 *            Listener registered for the threshold
+	 */
+	public void removeDrawerThreshold(float threshold, DrawerThresholdListener listener) {
+		final float[] thresholds = mThresholds;
+		final DrawerThresholdListener[] listeners = mThresholdListeners;
+		int index = -1;
+		for (int i = firstIndexNotBelow(thresholds, threshold); i < thresholds.length && thresholds[i] == threshold; i++) {
+			if (listeners[i] == listener) {
+				index = i;
+				break;
+			}
+		}
+		if (index < 0) {
+			return;
+		}
+
+		final float[] newThresholds = new float[thresholds.length - 1];
+		final DrawerThresholdListener[] newListeners = new DrawerThresholdListener[listeners.length - 1];
+		System.arraycopy(thresholds, 0, newThresholds, 0, index);
+		System.arraycopy(listeners, 0, newListeners, 0, index);
+		System.arraycopy(thresholds, index + 1, newThresholds, index, thresholds.length - index - 1);
+		System.arraycopy(listeners, index + 1, newListeners, index, listeners.length - index - 1);
+		mThresholds = newThresholds;
+		mThresholdListeners = newListeners;
+	}
+
+	/**
+	 * Bind a view property to the drawer offset. The property is interpolated
+	 * linearly between the closed and opened value whenever the drawer moves.
+	 * Bindings have no effect on platforms older than Honeycomb. Direct children
+	 * can declare a binding in XML with <code>layout_offsetProperty</code>,
+	 * <code>layout_offsetClosedValue</code> and <code>layout_offsetOpenedValue</code>.
+	 * 
+	 * @param view
+	 *            View to update
+	 * @param property
+	 *            One of {@link #PROPERTY_ALPHA}, {@link #PROPERTY_TRANSLATION_X},
+	 *            {@link #PROPERTY_TRANSLATION_Y}, {@link #PROPERTY_SCALE_X} or
+	 *            {@link #PROPERTY_SCALE_Y}
+	 * @param closedValue
+	 *            Property value when the drawer is closed
+	 * @param openedValue
+	 *            Property value when the drawer is opened
+	 * @see #removeOffsetBindings(View)
+	 */
+	public void addOffsetBinding(View view, int property, float closedValue, float openedValue) {
+		if (property < PROPERTY_ALPHA || property > PROPERTY_SCALE_Y) {
+			throw new IllegalArgumentException("Unknown property " + property);
+		}
+
+		final int index = mBindingCount;
+		if (index == mBindingViews.length) {
+			final int capacity = index + 4;
+			final View[] views = new View[capacity];
+			final int[] properties = new int[capacity];
+			final float[] closedValues = new float[capacity];
+			final float[] openedValues = new float[capacity];
+			System.arraycopy(mBindingViews, 0, views, 0, index);
+			System.arraycopy(mBindingProperties, 0, properties, 0, index);
+			System.arraycopy(mBindingClosedValues, 0, closedValues, 0, index);
+			System.arraycopy(mBindingOpenedValues, 0, openedValues, 0, index);
+			mBindingViews = views;
+			mBindingProperties = properties;
+			mBindingClosedValues = closedValues;
+			mBindingOpenedValues = openedValues;
+		}
+		mBindingViews[index] = view;
+		mBindingProperties[index] = property;
+		mBindingClosedValues[index] = closedValue;
+		mBindingOpenedValues[index] = openedValue;
+		mBindingCount++;
+
+		final View drawerView = findDrawer();
+		if (drawerView != null) {
+			applyOffsetBinding(index, ((LayoutParams) drawerView.getLayoutParams()).onScreen);
+		}
+	}
+
+	/**
+	 * Remove all property bindings of the view.
+	 * 
+	 * @param view
+	 *            View passed to
+	 *            {@link #addOffsetBinding(View, int, float, float)}
+	 */
+	public void removeOffsetBindings(View view) {
+		int count = 0;
+		for (int i = 0; i < mBindingCount; i++) {
+			if (mBindingViews[i] == view) {
+				continue;
+			}
+			mBindingViews[count] = mBindingViews[i];
+			mBindingProperties[count] = mBindingProperties[i];
+			mBindingClosedValues[count] = mBindingClosedValues[i];
+			mBindingOpenedValues[count] = mBindingOpenedValues[i];
+			count++;
+		}
+		for (int i = count; i < mBindingCount; i++) {
+			mBindingViews[i] = null;
+		}
+		mBindingCount = count;
+	}
+
+	private void applyOffsetBindings(float offset) {
+		for (int i = 0; i < mBindingCount; i++) {
+			applyOffsetBinding(i, offset);
+		}
+	}
+
+	private void applyOffsetBinding(int index, float offset) {
+		if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+			return;
+		}
+
+		final float fraction = Math.max(0.f, Math.min(offset, 1.f));
+		final float closedValue = mBindingClosedValues[index];
+		final float value = closedValue + (mBindingOpenedValues[index] - closedValue) * fraction;
+		final View view = mBindingViews[index];
+		switch (mBindingProperties[index]) {
+		case PROPERTY_ALPHA:
+			view.setAlpha(value);
+			break;
+		case PROPERTY_TRANSLATION_X:
+			view.setTranslationX(value);
+			break;
+		case PROPERTY_TRANSLATION_Y:
+			view.setTranslationY(value);
+			break;
+		case PROPERTY_SCALE_X:
+			view.setScaleX(value);
+			break;
+		case PROPERTY_SCALE_Y:
+			view.setScaleY(value);
+			break;
+		}
+	}
+
+	/**
+	 * @return index of the first of sorted values that is not smaller than value
+	 */
+	private static int firstIndexNotBelow(float[] values, float value) {
+		int low = 0;
+		int high = values.length;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (values[mid] < value) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @return index of the first of sorted values that is greater than value
+	 */
+	private static int firstIndexAbove(float[] values, float value) {
+		int low = 0;
+		int high = values.length;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (values[mid] <= value) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private int indexOfDrawerListener(DrawerListener listener) {
+		final DrawerListener[] listeners = mListeners;
+		for (int i = 0; i < listeners.length; i++) {
+			if (listeners[i] == listener) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Check if the drawer view is currently visible on-screen. The drawer
+	 * may be dragged or fully extended.
+	 * 
+	 * @return true if the drawer is visible on-screen
+	 * @see #isDrawerOpen()
+	 */
+	public boolean isDrawerVisible(){
+		final View drawer = findDrawer();
+		if(drawer != null && isDrawerVisible(drawer)){
+			return true;
+		}
+		return false;
+	}
+	
+	private boolean isDrawerVisible(View drawer) {
+		if (isContentView(drawer)) {
+			throw new IllegalArgumentException("View " + drawer + " is not a drawer");
+		}
+		return ((LayoutParams) drawer.getLayoutParams()).onScreen > 0;
+	}
+
+    /**
+     * Check if the drawer view is currently in an open state.
+     * To be considered "open" the drawer must have settled into its fully
+     * visible state. To check for partial visibility use
+     * {@link #isDrawerVisible()}.
+     *
+     * @return true if the drawer view is in an open state
+     * @see #isDrawerVisible()
+     */
+	public boolean isDrawerOpen(){
+		final View drawer = findDrawer();
+		if(drawer != null && isDrawerOpen(drawer)){
+			return true;
+		}
+		return false;
+	}
+	
+    private boolean isDrawerOpen(View drawer) {
+        if (isContentView(drawer)) {
+            throw new IllegalArgumentException("View " + drawer + " is not a drawer");
+        }
+        return ((LayoutParams) drawer.getLayoutParams()).knownOpen;
+    }
+
+	/**
+ 	 * Should be called whenever a drag or settle state changes.
+	 */
+	void updateDrawerState(int activeState, View activeDrawer) {
+		// Drag helper only drags, settling and nested scroll drags are driven
+		// by this layout
+		final int state = mSettling || mSettleHeld ? STATE_SETTLING : mNestedDragging ? STATE_DRAGGING : mDragger.getDragState();
+		flushPendingDrawerSlide();
+
+		if (activeDrawer != null && state == STATE_IDLE) {
+			final LayoutParams lp = (LayoutParams) activeDrawer.getLayoutParams();
+			if (lp.onScreen == 1) {
+				dispatchOnDrawerOpened(activeDrawer);
+			} else {
+				// Drawer settled at an intermediate snap anchor is not open,
+				// leaving the opened state is reported as closing the drawer
+				dispatchOnDrawerClosed(activeDrawer);
+			}
+		}
+
+		if (state != mDrawerState) {
+			final int oldState = mDrawerState;
+			mDrawerState = state;
+			if (state == STATE_IDLE) {
+				disableHardwareLayers();
+			} else {
+				enableHardwareLayers();
+			}
+			updateDrawerBody();
+			updateDrawerSnapshot(oldState, state);
+
+			final DrawerListener[] listeners = mListeners;
+			for (int i = 0; i < listeners.length; i++) {
+				listeners[i].onDrawerStateChanged(state);
+			}
+		}
+	}
+	
+	private void updateDrawerSnapshot(int oldState, int state) {
+		if (oldState == STATE_IDLE) {
+			captureDrawerSnapshot();
+		} else if (state == STATE_IDLE && mDrawerSnapshotValid) {
+			mDrawerSnapshotValid = false;
+			final View drawerView = findDrawer();
+			if (drawerView != null) {
+				invalidate(drawerView.getLeft(), drawerView.getTop(), drawerView.getRight(), drawerView.getBottom());
+			}
+		}
+	}
+
+	/**
+	 * @return true if only the bottom bar of the drawer is on screen and the
+	 *         drawer is not moving
+	 */
+	private boolean isDrawerCollapsed(View drawerView) {
+		return mDrawerState == STATE_IDLE && ((LayoutParams) drawerView.getLayoutParams()).onScreen == 0;
+	}
+
+	private void updateDrawerBody() {
+		final View drawerView = findDrawer();
+		if (drawerView != null && isDrawerCollapsed(drawerView)) {
+			collapseDrawerBody();
+			scheduleDrawerBodyRelease();
+		} else {
+			cancelDrawerBodyRelease();
+			expandDrawerBody();
+		}
+	}
+
+	private void collapseDrawerBody() {
+		final View drawerBody = getDrawerBody();
+		if (mDrawerBodyCollapsed || drawerBody == null || drawerBody.getVisibility() != VISIBLE) {
+			return;
+		}
+		mDrawerBodyCollapsed = true;
+		drawerBody.setVisibility(INVISIBLE);
+		// Visibility change doesn't cause a layout, opacity has to be found again
+		mDrawerOpacityValid = false;
+	}
+
+	private void expandDrawerBody() {
+		if (!mDrawerBodyCollapsed) {
+			return;
+		}
+		mDrawerBodyCollapsed = false;
+		final View drawerBody = getDrawerBody();
+		if (drawerBody != null && drawerBody.getVisibility() == INVISIBLE) {
+			drawerBody.setVisibility(VISIBLE);
+			mDrawerOpacityValid = false;
+		}
+	}
+
+	private boolean canUseHardwareLayers() {
+		return Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB && isHardwareAccelerated();
+	}
+
+	private void enableHardwareLayers() {
+		if (mActiveHardwareLayers != HARDWARE_LAYERS_NONE || mHardwareLayers == HARDWARE_LAYERS_NONE
+				|| !canUseHardwareLayers()) {
+			return;
+		}
+
+		final View drawerView = findDrawer();
+		if (drawerView == null) {
+			return;
+		}
+
+		if ((mHardwareLayers & HARDWARE_LAYERS_DRAWER) != 0) {
+			mDrawerLayerType = ViewCompat.getLayerType(drawerView);
+			ViewCompat.setLayerType(drawerView, ViewCompat.LAYER_TYPE_HARDWARE, null);
+		}
+		mActiveHardwareLayers = mHardwareLayers;
+		updateContentLayer();
+
+		if (mHardwareLayersListener != null) {
+			mHardwareLayersListener.onDrawerHardwareLayersChanged(drawerView, true);
+		}
+	}
+
+	private void disableHardwareLayers() {
+		if (mActiveHardwareLayers == HARDWARE_LAYERS_NONE) {
+			return;
+		}
+
+		final View drawerView = findDrawer();
+		if ((mActiveHardwareLayers & HARDWARE_LAYERS_DRAWER) != 0 && drawerView != null) {
+			ViewCompat.setLayerType(drawerView, mDrawerLayerType, null);
+		}
+		mActiveHardwareLayers = HARDWARE_LAYERS_NONE;
+		updateContentLayer();
+
+		if (drawerView != null && mHardwareLayersListener != null) {
+			mHardwareLayersListener.onDrawerHardwareLayersChanged(drawerView, false);
+		}
+	}
+
+	/**
+	 * Content view is in a hardware layer either because of
+	 * {@link #HARDWARE_LAYERS_CONTENT} during drawer motion or because the
+	 * content scrim is applied to it in {@link #SCRIM_MODE_LAYER}.
+	 */
+	private void updateContentLayer() {
+		final View contentView = findContent();
+		if (contentView == null) {
+			return;
+		}
+
+		final boolean scrimOnLayer = mScrimMode == SCRIM_MODE_LAYER && mContentScrimOpacity > 0
+				&& canUseHardwareLayers();
+		final boolean layered = scrimOnLayer || (mActiveHardwareLayers & HARDWARE_LAYERS_CONTENT) != 0;
+		if (layered != mContentLayered) {
+			mContentLayered = layered;
+			if (layered) {
+				mContentLayerType = ViewCompat.getLayerType(contentView);
+				ViewCompat.setLayerType(contentView, ViewCompat.LAYER_TYPE_HARDWARE, null);
+			} else {
+				ViewCompat.setLayerType(contentView, mContentLayerType, null);
+				mContentLayerScrimStep = -1;
+				return;
 			}
 		}
+
+		if (scrimOnLayer) {
+			final int step = Math.round(mContentScrimOpacity * LAYER_SCRIM_STEPS);
+			if (step != mContentLayerScrimStep) {
+				mContentLayerScrimStep = step;
+				mContentLayerPaint.setColorFilter(getContentLayerScrimFilters()[step]);
+				ViewCompat.setLayerPaint(contentView, mContentLayerPaint);
+			}
+		} else if (mContentLayerScrimStep != -1) {
+			mContentLayerScrimStep = -1;
+			mContentLayerPaint.setColorFilter(null);
+			ViewCompat.setLayerPaint(contentView, mContentLayerPaint);
+		}
 	}
-	
+
+	private PorterDuffColorFilter[] getContentLayerScrimFilters() {
+		if (mContentLayerScrimFilters == null) {
+			final int baseAlpha = (mContentScrimColor & 0xff000000) >>> 24;
+			final PorterDuffColorFilter[] filters = new PorterDuffColorFilter[LAYER_SCRIM_STEPS + 1];
+			for (int i = 0; i <= LAYER_SCRIM_STEPS; i++) {
+				final int imag = baseAlpha * i / LAYER_SCRIM_STEPS;
+				final int color = imag << 24 | (mContentScrimColor & 0xffffff);
+				filters[i] = new PorterDuffColorFilter(color, PorterDuff.Mode.SRC_ATOP);
+			}
+			mContentLayerScrimFilters = filters;
+		}
+		return mContentLayerScrimFilters;
+	}
+
+	private boolean isContentScrimOnLayer() {
+		return mContentLayerScrimStep != -1;
+	}
+
 	void dispatchOnDrawerClosed(View drawerView) {
 		final LayoutParams lp = (LayoutParams) drawerView.getLayoutParams();
 		if (lp.knownOpen) {
 			lp.knownOpen = false;
-			if (mListener != null) {
-				mListener.onDrawerClosed(drawerView);
+			final DrawerListener[] listeners = mListeners;
+			for (int i = 0; i < listeners.length; i++) {
+				listeners[i].onDrawerClosed(drawerView);
 			}
 			sendAccessibilityEvent(AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED);
 		}
@@ -326,16 +2063,47 @@ public class BottomBarDrawerLayout extends ViewGroup {
 		final LayoutParams lp = (LayoutParams) drawerView.getLayoutParams();
 		if (!lp.knownOpen) {
 			lp.knownOpen = true;
-			if (mListener != null) {
-				mListener.onDrawerOpened(drawerView);
+			final DrawerListener[] listeners = mListeners;
+			for (int i = 0; i < listeners.length; i++) {
+				listeners[i].onDrawerOpened(drawerView);
 			}
 			drawerView.sendAccessibilityEvent(AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED);
 		}
 	}
 	
 	void dispatchOnDrawerSlide(View drawerView, float slideOffset) {
-		if (mListener != null) {
-			mListener.onDrawerSlide(drawerView, slideOffset);
+		if (mCoalesceSlideEvents) {
+			mPendingSlideDrawer = drawerView;
+			mPendingSlideOffset = slideOffset;
+			if (!mSlideDispatchPending) {
+				mSlideDispatchPending = true;
+				ViewCompat.postOnAnimation(this, mDispatchSlideRunnable);
+			}
+			return;
+		}
+
+		final DrawerListener[] listeners = mListeners;
+		for (int i = 0; i < listeners.length; i++) {
+			listeners[i].onDrawerSlide(drawerView, slideOffset);
+		}
+	}
+
+	/**
+	 * Delivers coalesced slide event right away, if there is one pending.
+	 */
+	private void flushPendingDrawerSlide() {
+		if (!mSlideDispatchPending) {
+			return;
+		}
+
+		mSlideDispatchPending = false;
+		removeCallbacks(mDispatchSlideRunnable);
+		final View drawerView = mPendingSlideDrawer;
+		mPendingSlideDrawer = null;
+
+		final DrawerListener[] listeners = mListeners;
+		for (int i = 0; i < listeners.length; i++) {
+			listeners[i].onDrawerSlide(drawerView, mPendingSlideOffset);
 		}
 	}
 	
@@ -345,8 +2113,68 @@ public class BottomBarDrawerLayout extends ViewGroup {
 			return;
 		}
 
+		final float oldOffset = lp.onScreen;
 		lp.onScreen = slideOffset;
+		updateScrimOpacity(slideOffset);
+		updateContentLayer();
+		applyOffsetBindings(slideOffset);
 		dispatchOnDrawerSlide(drawerView, slideOffset);
+		dispatchOnDrawerThresholds(drawerView, oldOffset, slideOffset);
+	}
+
+	/**
+	 * Notifies listeners of thresholds in [min(old, new), max(old, new)), in the
+	 * order in which the drawer crossed them.
+	 */
+	void dispatchOnDrawerThresholds(View drawerView, float oldOffset, float newOffset) {
+		final float[] thresholds = mThresholds;
+		if (thresholds.length == 0) {
+			return;
+		}
+
+		final DrawerThresholdListener[] listeners = mThresholdListeners;
+		final boolean opening = newOffset > oldOffset;
+		final int from = firstIndexNotBelow(thresholds, opening ? oldOffset : newOffset);
+		final int to = firstIndexNotBelow(thresholds, opening ? newOffset : oldOffset);
+		if (opening) {
+			for (int i = from; i < to; i++) {
+				listeners[i].onDrawerThresholdCrossed(drawerView, thresholds[i], true);
+			}
+		} else {
+			for (int i = to - 1; i >= from; i--) {
+				listeners[i].onDrawerThresholdCrossed(drawerView, thresholds[i], false);
+			}
+		}
+	}
+
+	private void updateScrimOpacity(float slideOffset) {
+		mContentScrimOpacity = slideOffset;
+		mDrawerScrimOpacity = 1.f - slideOffset;
+	}
+
+	/**
+	 * Content is occluded when the opaque part of the drawer covers its whole
+	 * rect. Occluded content is neither drawn nor reported to accessibility, its
+	 * visibility is left untouched so that nothing in its subtree is invalidated
+	 * when it gets covered or uncovered.
+	 * 
+	 * @return true if the content view can't be seen at all
+	 */
+	boolean isContentOccluded() {
+		final View contentView = findContent();
+		final View drawerView = findDrawer();
+		if (contentView == null || drawerView == null || drawerView.getVisibility() != VISIBLE) {
+			return false;
+		}
+
+		// Drawer always reaches at least to the bottom of the layout, so it is
+		// enough to check the top edge and horizontal span of the content.
+		if (drawerView.getLeft() > contentView.getLeft() || drawerView.getRight() < contentView.getRight()) {
+			return false;
+		}
+
+		final int opaqueInset = getDrawerOpaqueInset(drawerView);
+		return opaqueInset >= 0 && drawerView.getTop() + opaqueInset <= contentView.getTop();
 	}
 
 	float getDrawerViewOffset(View drawerView) {
@@ -354,146 +2182,569 @@ public class BottomBarDrawerLayout extends ViewGroup {
 	}
 	
 	View findOpenDrawer() {
-		final int childCount = getChildCount();
-		for (int i = 0; i < childCount; i++) {
-			final View child = getChildAt(i);
-			if (((LayoutParams) child.getLayoutParams()).knownOpen) {
-				return child;
-			}
+		final View drawer = findDrawer();
+		if (drawer != null && ((LayoutParams) drawer.getLayoutParams()).knownOpen) {
+			return drawer;
 		}
 		return null;
 	}
 	
 	View findDrawer() {
-		for (int i = 0, childCount = getChildCount(); i < childCount; i++) {
-			final View child = getChildAt(i);
-			if (!isContentView(child)) {
-				return child;
-			}
-		}
-		return null;
+		ensureChildRoles();
+		return mDrawerView;
 	}
 
 	View findContent() {
+		ensureChildRoles();
+		return mContentView;
+	}
+
+	/**
+	 * Rebuilds child role index if it is no longer valid. Validity check is
+	 * constant time - child count and id of indexed children.
+	 */
+	private void ensureChildRoles() {
+		if (mIndexedChildCount == getChildCount()
+				&& (mContentView == null || isContentView(mContentView))
+				&& (mDrawerView == null || !isContentView(mDrawerView))) {
+			return;
+		}
+
+		mContentView = null;
+		mDrawerView = null;
 		final int childCount = getChildCount();
 		for (int i = 0; i < childCount; i++) {
 			final View child = getChildAt(i);
 			if (isContentView(child)) {
-				return child;
+				if (mContentView == null) {
+					mContentView = child;
+				}
+			} else if (mDrawerView == null) {
+				mDrawerView = child;
+			}
+		}
+		mIndexedChildCount = childCount;
+	}
+
+	/*
+	 * ViewGroup#onViewAdded and #onViewRemoved are hidden on the API level this
+	 * is built against, children are tracked in the public add and remove
+	 * methods instead. Role index itself is revalidated on lookup.
+	 */
+
+	@Override
+	public void addView(View child, int index, ViewGroup.LayoutParams params) {
+		super.addView(child, index, params);
+		mDrawerOpacityValid = false;
+
+		// Layout params are converted to our own by the super call
+		final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+		if (lp.offsetProperty != LayoutParams.NO_OFFSET_PROPERTY) {
+			addOffsetBinding(child, lp.offsetProperty, lp.offsetClosedValue, lp.offsetOpenedValue);
+		}
+	}
+
+	@Override
+	public void removeView(View view) {
+		onChildRemoved(view);
+		super.removeView(view);
+	}
+
+	@Override
+	public void removeViewInLayout(View view) {
+		onChildRemoved(view);
+		super.removeViewInLayout(view);
+	}
+
+	@Override
+	public void removeViewAt(int index) {
+		onChildRemoved(getChildAt(index));
+		super.removeViewAt(index);
+	}
+
+	@Override
+	public void removeViews(int start, int count) {
+		onChildrenRemoved(start, count);
+		super.removeViews(start, count);
+	}
+
+	@Override
+	public void removeViewsInLayout(int start, int count) {
+		onChildrenRemoved(start, count);
+		super.removeViewsInLayout(start, count);
+	}
+
+	@Override
+	public void removeAllViews() {
+		onChildrenRemoved(0, getChildCount());
+		super.removeAllViews();
+	}
+
+	@Override
+	public void removeAllViewsInLayout() {
+		onChildrenRemoved(0, getChildCount());
+		super.removeAllViewsInLayout();
+	}
+
+	private void onChildrenRemoved(int start, int count) {
+		final int end = Math.min(start + count, getChildCount());
+		for (int i = start; i < end; i++) {
+			onChildRemoved(getChildAt(i));
+		}
+	}
+
+	/**
+	 * Called before the child is actually removed, index is rebuilt on next
+	 * lookup.
+	 */
+	private void onChildRemoved(View child) {
+		if (child == null || child.getParent() != this) {
+			return;
+		}
+
+		mIndexedChildCount = -1;
+		mDrawerOpacityValid = false;
+		mOpacityChild = null;
+		removeOffsetBindings(child);
+		if (child == mContentView) {
+			mContentView = null;
+		} else if (child == mDrawerView) {
+			mDrawerView = null;
+			mDrawerBodyCollapsed = false;
+			// Body of the next drawer is inflated again
+			mDrawerBodyInflated = false;
+			if (mDrawerBodyId != NO_ID) {
+				mDrawerBody = null;
 			}
 		}
-		return null;
 	}
 	
 	@Override
 	protected void onDetachedFromWindow() {
 		super.onDetachedFromWindow();
+		abortSettle();
+		flushPendingDrawerSlide();
+		disableHardwareLayers();
+		removeCallbacks(mScheduleDrawerBodyInflationRunnable);
+		Looper.myQueue().removeIdleHandler(mInflateDrawerBodyIdleHandler);
+		cancelDrawerBodyInflation();
+		mDrawerBodyInflationPending = false;
+		cancelDrawerBodyRelease();
+		releaseDrawerSnapshot();
+		unregisterTrimMemoryCallbacks();
+		mFirstLayout = true;
+	}
+
+	@Override
+	protected void onAttachedToWindow() {
+		super.onAttachedToWindow();
 		mFirstLayout = true;
+		if ((mInflateDrawerBodyWhenIdle || mInflateDrawerBodyInBackground) && needsDrawerBodyInflation()) {
+			mDrawerBodyInflationPending = mInflateDrawerBodyInBackground;
+			post(mScheduleDrawerBodyInflationRunnable);
+		}
+		updateTrimMemoryCallbacks();
+	}
+
+	/**
+	 * Trim memory callbacks are registered only while attached and while there
+	 * is something to release - opted in body content or the drawer snapshot.
+	 */
+	private void updateTrimMemoryCallbacks() {
+		final boolean needed = (mDrawerBodyLayout != 0 && mReleaseDrawerBodyOnTrimMemory) || mSnapshotDrawer;
+		if (!needed || getWindowToken() == null) {
+			unregisterTrimMemoryCallbacks();
+		} else if (mTrimMemoryCallbacks == null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+			mTrimMemoryCallbacks = new TrimMemoryCallbacks();
+			getContext().registerComponentCallbacks(mTrimMemoryCallbacks);
+		}
+	}
+
+	private void unregisterTrimMemoryCallbacks() {
+		if (mTrimMemoryCallbacks != null) {
+			getContext().unregisterComponentCallbacks(mTrimMemoryCallbacks);
+			mTrimMemoryCallbacks = null;
+		}
+	}
+	
+	@Override
+	protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        final int widthMode = MeasureSpec.getMode(widthMeasureSpec);
+        final int heightMode = MeasureSpec.getMode(heightMeasureSpec);
+        final int widthSize = MeasureSpec.getSize(widthMeasureSpec);
+        final int heightSize = MeasureSpec.getSize(heightMeasureSpec);
+
+        if (widthMode != MeasureSpec.EXACTLY || heightMode != MeasureSpec.EXACTLY) {
+            throw new IllegalArgumentException(
+                    "BottomBarDrawerLayout must be measured with MeasureSpec.EXACTLY.");
+        }
+		
+        setMeasuredDimension(widthSize, heightSize);
+        
+        // Gravity value for each drawer we've seen. Only one of each permitted.
+        for (int i = 0, childCount = getChildCount(); i < childCount; i++) {
+            final View child = getChildAt(i);
+
+            if (child.getVisibility() == GONE) {
+                continue;
+            }
+
+            final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+
+            if (isContentView(child)) {
+                // Content views get measured at exactly the layout's size.
+                final int contentWidthSpec = MeasureSpec.makeMeasureSpec(
+                        widthSize - lp.leftMargin - lp.rightMargin, MeasureSpec.EXACTLY);
+                final int contentHeightSpec = MeasureSpec.makeMeasureSpec(
+                        heightSize - lp.topMargin - lp.bottomMargin - mVisiblePartHeight, MeasureSpec.EXACTLY);
+                child.measure(contentWidthSpec, contentHeightSpec);
+            } else {
+                final int drawerWidthSpec = getChildMeasureSpec(widthMeasureSpec,
+                        lp.leftMargin + lp.rightMargin,
+                        lp.width);
+                final int drawerHeightSpec = getChildMeasureSpec(heightMeasureSpec,
+                        lp.topMargin + lp.bottomMargin,
+                        lp.height);
+                child.measure(drawerWidthSpec, drawerHeightSpec);
+            } 
+        }
+	}
+
+	/**
+	 * Positions a child whose size didn't change and that didn't request layout
+	 * by offsetting it, without a layout pass of its subtree.
+	 */
+	private static void layoutChildIfNeeded(View child, int left, int top) {
+		final int width = child.getMeasuredWidth();
+		final int height = child.getMeasuredHeight();
+		if (!child.isLayoutRequested() && child.getWidth() == width && child.getHeight() == height) {
+			if (child.getLeft() != left) {
+				child.offsetLeftAndRight(left - child.getLeft());
+			}
+			if (child.getTop() != top) {
+				child.offsetTopAndBottom(top - child.getTop());
+			}
+			return;
+		}
+
+		child.layout(left, top, left + width, top + height);
+	}
+
+	/**
+	 * @return top of the drawer of given height at given offset
+	 */
+	private int getDrawerTop(int drawerHeight, float offset) {
+		return getHeight() - mVisiblePartHeight - (int) ((drawerHeight - mVisiblePartHeight) * offset);
+	}
+
+	@Override
+	protected void onLayout(boolean changed, int l, int t, int r, int b) {
+		mInLayout = true;
+		mDrawerOpacityValid = false;
+		for (int i = 0, childCount = getChildCount(); i < childCount; i++) {
+			final View child = getChildAt(i);
+
+			final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+
+			if (isContentView(child)) {
+				layoutChildIfNeeded(child, lp.leftMargin, lp.topMargin);
+			} else { // Drawer view - hidden at offset 0, displayed otherwise
+				final int top = getDrawerTop(child.getMeasuredHeight(), lp.onScreen);
+
+				layoutChildIfNeeded(child, lp.leftMargin, top);
+			}
+		}
+
+		final View drawerView = findDrawer();
+		if (drawerView != null) {
+			final float offset = ((LayoutParams) drawerView.getLayoutParams()).onScreen;
+			updateScrimOpacity(offset);
+			applyOffsetBindings(offset);
+		}
+		updateHitRects();
+		updateContentLayer();
+		updateDrawerBody();
+		mInLayout = false;
+		mFirstLayout = false;
+	}
+
+	@Override
+	public void requestLayout() {
+		if (!mInLayout) {
+			super.requestLayout();
+		}
+	}
+	
+	@Override
+	public void computeScroll() {
+		if (!mSettling) {
+			return;
+		}
+
+		final View drawerView = findDrawer();
+		if (drawerView == null) {
+			abortSettle();
+			return;
+		}
+
+		final boolean moving;
+		if (mSettleMode == SETTLE_MODE_SPRING) {
+			final long now = AnimationUtils.currentAnimationTimeMillis();
+			moving = mSpring.step((now - mSpringFrameTime) / 1000.f);
+			mSpringFrameTime = now;
+			moveDrawerTo(drawerView, clampDrawerTop(drawerView, Math.round(mSpring.getPosition())));
+		} else {
+			moving = mSettleScroller.computeScrollOffset();
+			if (moving) {
+				moveDrawerTo(drawerView, mSettleScroller.getCurrY());
+			}
+		}
+
+		if (moving) {
+			// Drawer region is enough to get computeScroll() called on next frame,
+			// the damage of the move itself is reported by moveDrawerTo.
+			ViewCompat.postInvalidateOnAnimation(this, drawerView.getLeft(), drawerView.getTop(), drawerView.getRight(), getHeight());
+			return;
+		}
+
+		mSettling = false;
+		updateDrawerState(STATE_IDLE, drawerView);
+	}
+
+	private int clampDrawerTop(View drawerView, int top) {
+		final int openedTop = getHeight() - drawerView.getHeight();
+		final int closedTop = getHeight() - mVisiblePartHeight;
+		return Math.max(openedTop, Math.min(top, closedTop));
+	}
+
+	/**
+	 * Animates the drawer to the offset. If the drawer is moving towards the
+	 * offset with given velocity, the animation starts at that velocity,
+	 * otherwise its duration depends on the distance. Spring settle always
+	 * starts at the given velocity, a running spring keeps its momentum when
+	 * retargeted without one.
+	 * 
+	 * @param yvel
+	 *            Vertical velocity of the drawer in pixels per second
+	 */
+	void settleDrawerAt(View drawerView, float offset, float yvel) {
+		final int startTop = drawerView.getTop();
+		final int dy = getDrawerTop(drawerView.getHeight(), offset) - startTop;
+		if (dy == 0) {
+			abortSettle();
+			return;
+		}
+
+		if (mSettleMode == SETTLE_MODE_SPRING) {
+			final float velocity = mSettling && yvel == 0 ? mSpring.getVelocity() : yvel;
+			mSpring.start(startTop, velocity, startTop + dy);
+			mSpringFrameTime = AnimationUtils.currentAnimationTimeMillis();
+		} else {
+			mSettleScroller.abortAnimation();
+			mSettleScroller.startScroll(drawerView.getLeft(), startTop, 0, dy, computeSettleDuration(drawerView, dy, yvel));
+		}
+		mSettling = true;
+		mSettleHeld = false;
+		updateDrawerState(STATE_SETTLING, drawerView);
+		ViewCompat.postInvalidateOnAnimation(this, drawerView.getLeft(), drawerView.getTop(), drawerView.getRight(), getHeight());
+	}
+
+	private int computeSettleDuration(View drawerView, int dy, float yvel) {
+		final int distance = Math.abs(dy);
+		final int duration;
+		if (yvel != 0 && (yvel > 0) == (dy > 0)) {
+			// Initial speed of the settle interpolator matches the release velocity
+			duration = (int) (2000.f * distance / Math.abs(yvel));
+		} else {
+			final int range = Math.max(drawerView.getHeight() - mVisiblePartHeight, 1);
+			duration = (int) (BASE_SETTLE_DURATION * (float) distance / range);
+		}
+		return Math.max(MIN_SETTLE_DURATION, Math.min(duration, MAX_SETTLE_DURATION));
+	}
+
+	/**
+	 * Stops settling drawer where it currently is.
+	 */
+	void abortSettle() {
+		if (!mSettling && !mSettleHeld) {
+			return;
+		}
+
+		mSettleScroller.abortAnimation();
+		mSpring.stop();
+		mSettling = false;
+		mSettleHeld = false;
+		updateDrawerState(STATE_IDLE, findDrawer());
+	}
+
+	/**
+	 * Stops settling drawer where it currently is, without reporting it idle.
+	 * Touch that stopped it has to either drag the drawer or release it with
+	 * {@link #releaseHeldSettle()}.
+	 */
+	private void holdSettle() {
+		if (!mSettling) {
+			return;
+		}
+
+		mSettleScroller.abortAnimation();
+		mSpring.stop();
+		mSettling = false;
+		mSettleHeld = true;
+		final View drawerView = findDrawer();
+		if (drawerView != null) {
+			mDragStartOffset = getDrawerViewOffset(drawerView);
+		}
 	}
 
-	@Override
-	protected void onAttachedToWindow() {
-		super.onAttachedToWindow();
-		mFirstLayout = true;
+	/**
+	 * Hands settling or held drawer over to a drag, drawer state goes from
+	 * settling straight to dragging.
+	 */
+	private void takeOverSettle() {
+		holdSettle();
+		mSettleHeld = false;
 	}
-	
-	@Override
-	protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        final int widthMode = MeasureSpec.getMode(widthMeasureSpec);
-        final int heightMode = MeasureSpec.getMode(heightMeasureSpec);
-        final int widthSize = MeasureSpec.getSize(widthMeasureSpec);
-        final int heightSize = MeasureSpec.getSize(heightMeasureSpec);
 
-        if (widthMode != MeasureSpec.EXACTLY || heightMode != MeasureSpec.EXACTLY) {
-            throw new IllegalArgumentException(
-                    "BottomBarDrawerLayout must be measured with MeasureSpec.EXACTLY.");
-        }
-		
-        setMeasuredDimension(widthSize, heightSize);
-        
-        // Gravity value for each drawer we've seen. Only one of each permitted.
-        for (int i = 0, childCount = getChildCount(); i < childCount; i++) {
-            final View child = getChildAt(i);
+	/**
+	 * Settles the held drawer at the nearest snap anchor, touch that held it
+	 * ended without dragging it.
+	 */
+	private void releaseHeldSettle() {
+		if (!mSettleHeld) {
+			return;
+		}
 
-            if (child.getVisibility() == GONE) {
-                continue;
-            }
+		final View drawerView = findDrawer();
+		if (drawerView != null) {
+			releaseDrawer(drawerView, 0);
+		} else {
+			abortSettle();
+		}
+	}
 
-            final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+	/**
+	 * Moves the drawer to the top position without a layout pass, the same way
+	 * drag does.
+	 */
+	void moveDrawerTo(View drawerView, int top) {
+		final int oldTop = drawerView.getTop();
+		if (top == oldTop) {
+			return;
+		}
 
-            if (isContentView(child)) {
-                // Content views get measured at exactly the layout's size.
-                final int contentWidthSpec = MeasureSpec.makeMeasureSpec(
-                        widthSize - lp.leftMargin - lp.rightMargin, MeasureSpec.EXACTLY);
-                final int contentHeightSpec = MeasureSpec.makeMeasureSpec(
-                        heightSize - lp.topMargin - lp.bottomMargin - mVisiblePartHeight, MeasureSpec.EXACTLY);
-                child.measure(contentWidthSpec, contentHeightSpec);
-            } else {
-                final int drawerWidthSpec = getChildMeasureSpec(widthMeasureSpec,
-                        lp.leftMargin + lp.rightMargin,
-                        lp.width);
-                final int drawerHeightSpec = getChildMeasureSpec(heightMeasureSpec,
-                        lp.topMargin + lp.bottomMargin,
-                        lp.height);
-                child.measure(drawerWidthSpec, drawerHeightSpec);
-            } 
-        }
+		drawerView.offsetTopAndBottom(top - oldTop);
+		onDrawerMoved(drawerView, oldTop);
 	}
 
-	@Override
-	protected void onLayout(boolean changed, int l, int t, int r, int b) {
-		mInLayout = true;
-		for (int i = 0, childCount = getChildCount(); i < childCount; i++) {
-			final View child = getChildAt(i);
+	/**
+	 * Updates drawer offset from its current position. Drawer is already moved by
+	 * offsetTopAndBottom, per frame work is limited to offset and scrim update.
+	 * Content visibility is never toggled, see {@link #isContentOccluded()}.
+	 */
+	private void onDrawerMoved(View drawerView, int oldTop) {
+		final int childHeight = drawerView.getHeight();
+		final int openedDrawerTop = getHeight() - childHeight;
 
-			final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+		// This reverses the positioning shown in onLayout.
+		final float offset = 1 - ((float) (drawerView.getTop() - openedDrawerTop) / (childHeight - mVisiblePartHeight));
 
-			if (isContentView(child)) {
-				child.layout(lp.leftMargin, lp.topMargin, lp.leftMargin + child.getMeasuredWidth(), lp.topMargin + child.getMeasuredHeight());
-
-				final View drawerView = findDrawer();
-				if(drawerView != null){
-					final LayoutParams drawerLayoutParams = (LayoutParams) drawerView.getLayoutParams();
-					if(drawerLayoutParams.onScreen == 1.f
-							&& drawerView.getMeasuredHeight() == getMeasuredHeight()){
-						child.setVisibility(INVISIBLE);
-					}
-				}
-			} else if (lp.onScreen == 0) { // Drawer view - hidden
-				final int top = getMeasuredHeight() - mVisiblePartHeight;
+		setDrawerViewOffset(drawerView, offset);
+		updateHitRects();
 
-				child.layout(lp.leftMargin, top, lp.leftMargin + child.getMeasuredWidth(), top + child.getMeasuredHeight());
-			} else { // Drawer view - displayed
-				final int top = getMeasuredHeight() - mVisiblePartHeight - (int) ((child.getMeasuredHeight() - mVisiblePartHeight) * lp.onScreen);
+		invalidateDrawerRegion(drawerView, oldTop);
+	}
 
-				child.layout(lp.leftMargin, top, lp.leftMargin + child.getMeasuredWidth(), top + child.getMeasuredHeight());
-			}
+	/**
+	 * Invalidates only the area damaged by drawer move from oldTop to its current
+	 * position: drawer strip with the shadow band above it and, if the content scrim
+	 * is not fully transparent, content area that has the scrim updated.
+	 */
+	private void invalidateDrawerRegion(View drawerView, int oldTop) {
+		final int top = drawerView.getTop();
+		final int shadowHeight = mShadow != null ? mShadow.getIntrinsicHeight() : 0;
+		final Rect dirty = mDirtyRect;
+		dirty.set(drawerView.getLeft(), Math.min(oldTop, top) - shadowHeight, drawerView.getRight(), getHeight());
+		if (oldTop != top && (mContentScrimColor & 0xff000000) != 0 && !isContentScrimOnLayer()) {
+			dirty.union(0, 0, getWidth(), getContentClipBottom());
 		}
-		mInLayout = false;
-		mFirstLayout = false;
+		invalidate(dirty);
 	}
 
-	@Override
-	public void requestLayout() {
-		if (!mInLayout) {
-			super.requestLayout();
+	/**
+	 * @return bottom edge of the content that is not covered by an opaque drawer
+	 */
+	private int getContentClipBottom() {
+		final int height = getHeight();
+		final View v = findDrawer();
+		if (v != null && v.getVisibility() == VISIBLE && v.getWidth() >= getWidth()) {
+			final int opaqueInset = getDrawerOpaqueInset(v);
+			if (opaqueInset >= 0) {
+				return Math.min(v.getTop() + opaqueInset, height);
+			}
 		}
+		return height;
 	}
-	
-	@Override
-	public void computeScroll() {
-		final int childCount = getChildCount();
-		float scrimOpacity = 0;
-		for (int i = 0; i < childCount; i++) {
-			final float onscreen = ((LayoutParams) getChildAt(i).getLayoutParams()).onScreen;
-			scrimOpacity = Math.max(scrimOpacity, onscreen);
+
+	/**
+	 * Forces the drawer opacity to be evaluated again on next draw. Call this
+	 * if the opacity of the drawer background (or of the background of its
+	 * direct child) changes without the drawable being replaced.
+	 */
+	public void invalidateDrawerOpacity() {
+		mDrawerOpacityValid = false;
+		invalidate();
+	}
+
+	/**
+	 * @return distance from the drawer top where the drawer becomes opaque down
+	 *         to its bottom edge, or -1 if it is not opaque
+	 */
+	private int getDrawerOpaqueInset(View drawerView) {
+		if (mDrawerOpacityValid
+				&& drawerView.getBackground() == mOpacityDrawerBackground
+				&& drawerView.getScrollY() == mOpacityDrawerScrollY
+				&& (mOpacityChild == null || (mOpacityChild.getBackground() == mOpacityChildBackground
+						&& mOpacityChild.getVisibility() == VISIBLE))) {
+			return mDrawerOpaqueInset;
 		}
-		mContentScrimOpacity = scrimOpacity;
-		mDrawerScrimOpacity = 1.0f - scrimOpacity;
 
-		if (mDragger.continueSettling(true)) {
-			ViewCompat.postInvalidateOnAnimation(this);
+		mOpacityDrawerBackground = drawerView.getBackground();
+		mOpacityDrawerScrollY = drawerView.getScrollY();
+		mOpacityChild = null;
+		mOpacityChildBackground = null;
+		mDrawerOpaqueInset = -1;
+
+		if (hasOpaqueBackground(drawerView)) {
+			mDrawerOpaqueInset = 0;
+		} else if (drawerView instanceof ViewGroup) {
+			// Drawer can still be opaque thanks to an opaque container covering
+			// it from some point down to its bottom edge.
+			final ViewGroup group = (ViewGroup) drawerView;
+			final int scrollY = mOpacityDrawerScrollY;
+			final int width = group.getWidth();
+			final int height = group.getHeight();
+			for (int i = 0, childCount = group.getChildCount(); i < childCount; i++) {
+				final View child = group.getChildAt(i);
+				final int top = Math.max(child.getTop() - scrollY, 0);
+				if (child.getVisibility() != VISIBLE || child.getLeft() > 0
+						|| child.getRight() < width || child.getBottom() - scrollY < height
+						|| !hasOpaqueBackground(child)) {
+					continue;
+				}
+
+				if (mOpacityChild == null || top < mDrawerOpaqueInset) {
+					mOpacityChild = child;
+					mDrawerOpaqueInset = top;
+				}
+			}
+			if (mOpacityChild != null) {
+				mOpacityChildBackground = mOpacityChild.getBackground();
+			}
 		}
+
+		mDrawerOpacityValid = true;
+		return mDrawerOpaqueInset;
 	}
 
 	private static boolean hasOpaqueBackground(View v) {
@@ -506,48 +2757,52 @@ public class BottomBarDrawerLayout extends ViewGroup {
 	
 	@Override
 	protected boolean drawChild(Canvas canvas, View child, long drawingTime) {
-		final int width = getWidth();
 		final boolean drawingContent = isContentView(child);
+		final boolean drawerCollapsed = !drawingContent && isDrawerCollapsed(child);
 		int clipTop = 0, clipBottom = getHeight();
 
-		final int restoreCount = canvas.save();
-		if (drawingContent) {
-			final int childCount = getChildCount();
-			for (int i = 0; i < childCount; i++) {
-				final View v = getChildAt(i);
-				if (v == child || v.getVisibility() != VISIBLE || !hasOpaqueBackground(v) || isContentView(v) || v.getWidth() < width) {
-					continue;
-				}
-
-				final int vtop = v.getTop();
-				if (vtop < clipBottom)
-					clipBottom = vtop;
+		final boolean result;
+		if (drawingContent && isContentOccluded()) {
+			clipBottom = getContentClipBottom();
+			result = false;
+		} else if (!drawingContent && mDrawerSnapshotValid) {
+			// Moving drawer is a single blit
+			drawDrawerSnapshot(canvas, child);
+			result = false;
+		} else {
+			final int restoreCount = canvas.save();
+			if (drawingContent) {
+				clipBottom = getContentClipBottom();
+				canvas.clipRect(0, clipTop, getWidth(), clipBottom);
+			} else if (drawerCollapsed) {
+				// Only the bottom bar is on screen, don't let the body below it draw
+				canvas.clipRect(child.getLeft(), child.getTop(), child.getRight(), child.getTop() + mVisiblePartHeight);
 			}
-			canvas.clipRect(0, clipTop, getWidth(), clipBottom);
+			result = super.drawChild(canvas, child, drawingTime);
+			canvas.restoreToCount(restoreCount);
 		}
-		final boolean result = super.drawChild(canvas, child, drawingTime);
-		canvas.restoreToCount(restoreCount);
 
-		if (mContentScrimOpacity > 0 && drawingContent) {
-			final int baseAlpha = (mContentScrimColor & 0xff000000) >>> 24;
-			final int imag = (int) (baseAlpha * mContentScrimOpacity);
-			final int color = imag << 24 | (mContentScrimColor & 0xffffff);
-			mContentScrimPaint.setColor(color);
-			
-			canvas.drawRect(0, clipTop, getWidth(), clipBottom, mContentScrimPaint);
+		if (drawingContent) {
+			if (mContentScrimOpacity > 0 && !isContentScrimOnLayer()) {
+				final int baseAlpha = (mContentScrimColor & 0xff000000) >>> 24;
+				final int imag = (int) (baseAlpha * mContentScrimOpacity);
+				final int color = imag << 24 | (mContentScrimColor & 0xffffff);
+				mContentScrimPaint.setColor(color);
+
+				canvas.drawRect(0, clipTop, getWidth(), clipBottom, mContentScrimPaint);
+			}
 		} else if (mShadow != null) {
 			final int shadowHeight = mShadow.getIntrinsicHeight();
 			final int childTop = child.getTop();
 			final int showing = getHeight() - childTop;
-			final int drawerPeekDistance = mDragger.getEdgeSize();
-			final float alpha = Math.max(0, Math.min((float) showing / drawerPeekDistance, 1.f));
+			final float alpha = Math.max(0, Math.min((float) showing / mShadowFadeDistance, 1.f));
 			mShadow.setBounds(child.getLeft(), childTop - shadowHeight, child.getRight(), childTop);
 			mShadow.setAlpha((int) (0xff * alpha));
 			mShadow.draw(canvas);
 		}
 
 		final boolean drawingDrawer = !isContentView(child);
-		if (mDrawerScrimOpacity > 0 && drawingDrawer) {
+		if (mDrawerScrimOpacity > 0 && drawingDrawer && !drawerCollapsed) {
 			final int baseAlpha = (mDrawerScrimColor & 0xff000000) >>> 24;
 			final int imag = (int) (baseAlpha * mDrawerScrimOpacity);
 			final int color = imag << 24 | (mDrawerScrimColor & 0xffffff);
@@ -576,21 +2831,27 @@ public class BottomBarDrawerLayout extends ViewGroup {
 			final float y = ev.getY();
 			mInitialMotionX = x;
 			mInitialMotionY = y;
-			final View touchedView = mDragger.findTopChildUnder((int) x, (int) y);
-			if (isContentView(touchedView)){
+			if (isScrimTapHit(x, y)){
 				if(mContentScrimOpacity > 0){
 					interceptForTap = true;
 				}
-			} else if (isBottomBarTouched(touchedView, ev)){
+			} else if (isBottomBarHit(x, y)){
 				mBottomBarTouched = true; 
+				// Catch the settling drawer where it is
+				holdSettle();
+				if (mUnbufferedDrag) {
+					requestUnbufferedDispatch(ev);
+				}
 			}
 			
 			break;
 		}
+		case MotionEvent.ACTION_UP:
+		case MotionEvent.ACTION_CANCEL: {
+			// Touch went to a child of the bar or never became a drag
+			releaseHeldSettle();
+			break;
 		}
-		
-		if(interceptForDrag && !mBottomBarTouched){
-			interceptForDrag = false;
 		}
 
 		return interceptForDrag || interceptForTap;
@@ -623,15 +2884,16 @@ public class BottomBarDrawerLayout extends ViewGroup {
 			return false;
 		}
 		case MotionEvent.ACTION_UP: {
+			releaseHeldSettle();
 			final float x = ev.getX();
 			final float y = ev.getY();
-			final View touchedView = mDragger.findTopChildUnder((int) x, (int) y);
+			final View drawerView = findDrawer();
 
-			if (touchedView == null) {
+			if (drawerView == null) {
 				return false;
 			}
 			
-			if(isContentView(touchedView)){
+			if(isScrimTapHit(x, y)){
 				if(mContentScrimOpacity > 0){
 					closeDrawer();
 				}
@@ -648,17 +2910,18 @@ public class BottomBarDrawerLayout extends ViewGroup {
 					return false;
 				}
 				
-				final LayoutParams lp = (LayoutParams) touchedView.getLayoutParams();
+				final LayoutParams lp = (LayoutParams) drawerView.getLayoutParams();
 				if (lp.knownOpen) {
-					closeDrawerView(touchedView);
+					closeDrawerView(drawerView);
 				} else {
-					openDrawerView(touchedView);
+					openDrawerView(drawerView);
 				}
 			}
 			
 			break;
 		}
 		case MotionEvent.ACTION_CANCEL: {
+			releaseHeldSettle();
 			mBottomBarTouched = false;
 			break;
 		}
@@ -667,6 +2930,133 @@ public class BottomBarDrawerLayout extends ViewGroup {
 		return true;
 	}
 	
+	/**
+	 * Settles the drawer at a snap anchor picked from its offset, release
+	 * velocity and the offset where the drag started.
+	 * 
+	 * @param yvel
+	 *            Vertical velocity in pixels per second, negative opens the
+	 *            drawer
+	 */
+	private void releaseDrawer(View releasedChild, float yvel) {
+		// Offset is how open the drawer is, negative velocity opens it.
+		final float offset = getDrawerViewOffset(releasedChild);
+		final int childHeight = releasedChild.getHeight();
+		final float[] snapOffsets = getSnapOffsets(releasedChild);
+
+		final float target;
+		if (offset < 0) {
+			target = 0.f;
+			setDrawerViewOffset(releasedChild, 0);
+		} else if (yvel != 0) {
+			// Snap to the anchor in fling direction nearest to where the drawer
+			// would come to rest decelerating from the release velocity
+			final float distance = yvel * Math.abs(yvel) / (2 * mFlingDeceleration);
+			final float projected = offset - distance / (childHeight - mVisiblePartHeight);
+			target = flingSnapOffset(snapOffsets, offset, projected, yvel < 0);
+		} else if (offset - mDragStartOffset > DRAG_SLOP_OFFSET) {
+			target = ceilSnapOffset(snapOffsets, offset);
+		} else if (mDragStartOffset - offset > DRAG_SLOP_OFFSET) {
+			target = floorSnapOffset(snapOffsets, offset);
+		} else {
+			target = nearestSnapOffset(snapOffsets, offset);
+		}
+
+		settleDrawerAt(releasedChild, target, yvel);
+	}
+
+	/**
+	 * Nested scrolling parent hooks of API 21. They are plain methods here as
+	 * the project compiles against an older API, the framework calls them on
+	 * devices that support nested scrolling.
+	 */
+	public boolean onStartNestedScroll(View child, View target, int nestedScrollAxes) {
+		return child == findDrawer() && (nestedScrollAxes & NESTED_SCROLL_AXIS_VERTICAL) != 0
+				&& mDragger.getDragState() == STATE_IDLE;
+	}
+
+	public void onNestedScrollAccepted(View child, View target, int axes) {
+		// Settling drawer is stopped only once the scroll actually moves it,
+		// nested scroll starts already on touch down, e.g. on a tap of a list item
+		mNestedScrollAxes = axes;
+		mNestedFlingVelocity = 0;
+	}
+
+	public int getNestedScrollAxes() {
+		return mNestedScrollAxes;
+	}
+
+	public void onNestedPreScroll(View target, int dx, int dy, int[] consumed) {
+		// Opening drawer takes the scroll before the nested content
+		if (dy > 0) {
+			consumed[1] = nestedDragDrawer(dy);
+		}
+	}
+
+	public void onNestedScroll(View target, int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed) {
+		// Content scrolled to its top closes the drawer with the rest
+		if (dyUnconsumed < 0) {
+			nestedDragDrawer(dyUnconsumed);
+		}
+	}
+
+	public boolean onNestedPreFling(View target, float velocityX, float velocityY) {
+		final View drawerView = findDrawer();
+		if (!mNestedDragging || drawerView == null || getDrawerViewOffset(drawerView) >= 1) {
+			return false;
+		}
+
+		// Drawer moved in this gesture and is not fully open, fling settles it
+		mNestedFlingVelocity = -velocityY;
+		return true;
+	}
+
+	public boolean onNestedFling(View target, float velocityX, float velocityY, boolean consumed) {
+		return false;
+	}
+
+	public void onStopNestedScroll(View target) {
+		mNestedScrollAxes = 0;
+		if (!mNestedDragging) {
+			return;
+		}
+
+		mNestedDragging = false;
+		final View drawerView = findDrawer();
+		if (drawerView != null) {
+			releaseDrawer(drawerView, mNestedFlingVelocity);
+			updateDrawerState(STATE_IDLE, drawerView);
+		}
+	}
+
+	/**
+	 * Moves the drawer by nested scroll, positive dy opens it.
+	 * 
+	 * @return part of dy consumed by the drawer
+	 */
+	private int nestedDragDrawer(int dy) {
+		final View drawerView = findDrawer();
+		if (drawerView == null) {
+			return 0;
+		}
+
+		final int oldTop = drawerView.getTop();
+		final int top = clampDrawerTop(drawerView, oldTop - dy);
+		if (top == oldTop) {
+			return 0;
+		}
+
+		if (!mNestedDragging) {
+			// Drawer grabbed while settling continues from where it is
+			takeOverSettle();
+			mNestedDragging = true;
+			mDragStartOffset = getDrawerViewOffset(drawerView);
+			updateDrawerState(STATE_DRAGGING, drawerView);
+		}
+		moveDrawerTo(drawerView, top);
+		return oldTop - top;
+	}
+
 	@Override
 	public boolean onKeyDown(int keyCode, KeyEvent event) {
 		if (keyCode == KeyEvent.KEYCODE_BACK && hasVisibleDrawer()) {
@@ -705,11 +3095,10 @@ public class BottomBarDrawerLayout extends ViewGroup {
 			lp.onScreen = 0.f;
 			lp.knownOpen = false;
 		} else {
-			final int top = getHeight() - mVisiblePartHeight;
-			mDragger.smoothSlideViewTo(drawerView, drawerView.getLeft(), top);
+			settleDrawerAt(drawerView, 0.f, 0);
 		}
 
-		invalidate();
+		invalidateDrawerRegion(drawerView, drawerView.getTop());
 	}
 	
 	private void openDrawerView(View drawerView) {
@@ -717,46 +3106,82 @@ public class BottomBarDrawerLayout extends ViewGroup {
 			throw new IllegalArgumentException("View " + drawerView + " is not a sliding drawer");
 		}
 
+		ensureDrawerBodyInflated();
 		if (mFirstLayout) {
 			final LayoutParams lp = (LayoutParams) drawerView.getLayoutParams();
 			lp.onScreen = 1.f;
 			lp.knownOpen = true;
 		} else {
-			final int top = getHeight() - drawerView.getHeight();
-			mDragger.smoothSlideViewTo(drawerView, drawerView.getLeft(), top);
+			settleDrawerAt(drawerView, 1.f, 0);
 		}
 
-		invalidate();
+		invalidateDrawerRegion(drawerView, drawerView.getTop());
 	}
 	
+	/**
+	 * Puts the drawer at an intermediate offset, e.g. the snap anchor it was
+	 * settled at before the layout was recreated.
+	 */
+	private void moveDrawerToAnchor(View drawerView, float offset) {
+		ensureDrawerBodyInflated();
+		if (mFirstLayout) {
+			final LayoutParams lp = (LayoutParams) drawerView.getLayoutParams();
+			lp.onScreen = offset;
+			lp.knownOpen = false;
+		} else {
+			settleDrawerAt(drawerView, offset, 0);
+		}
+
+		invalidateDrawerRegion(drawerView, drawerView.getTop());
+	}
+
 	private boolean hasVisibleDrawer() {
 		return findVisibleDrawer() != null;
 	}
 
 	private View findVisibleDrawer() {
-		final int childCount = getChildCount();
-		for (int i = 0; i < childCount; i++) {
-			final View child = getChildAt(i);
-			if (!isContentView(child) && isDrawerVisible(child)) {
-				return child;
-			}
+		final View drawer = findDrawer();
+		if (drawer != null && isDrawerVisible(drawer)) {
+			return drawer;
 		}
 		return null;
 	}
 
-	private boolean isBottomBarTouched(View touchedView, MotionEvent ev) {
-		if(isContentView(touchedView)){
-			throw new IllegalArgumentException("View " + touchedView + " is not a Drawer view.");
+	/**
+	 * Updates touch targets from the current position of the children. Scrim
+	 * tap area is the part of the content above the drawer.
+	 */
+	private void updateHitRects() {
+		final View drawerView = findDrawer();
+		final View contentView = findContent();
+
+		if (drawerView != null) {
+			final int top = drawerView.getTop();
+			mBarHitRect.set(drawerView.getLeft(), top, drawerView.getRight(), top + mVisiblePartHeight);
+		} else {
+			mBarHitRect.setEmpty();
 		}
-		
-		final float touchedY = ev.getY();
-		final float touchedViewY = touchedY - touchedView.getTop(); 
 
-		if(touchedViewY < mVisiblePartHeight){
-			return true;
+		if (contentView != null) {
+			final int bottom = drawerView != null ? Math.min(contentView.getBottom(), drawerView.getTop()) : contentView.getBottom();
+			mScrimTapRect.set(contentView.getLeft(), contentView.getTop(), contentView.getRight(), bottom);
+		} else {
+			mScrimTapRect.setEmpty();
 		}
-		
-		return false;
+	}
+
+	/**
+	 * @return true if the point is on the bottom bar of the drawer
+	 */
+	private boolean isBottomBarHit(float x, float y) {
+		return mBarHitRect.contains((int) x, (int) y);
+	}
+
+	/**
+	 * @return true if the point is on the content not covered by the drawer
+	 */
+	private boolean isScrimTapHit(float x, float y) {
+		return mScrimTapRect.contains((int) x, (int) y);
 	}
 
 	@Override
@@ -785,11 +3210,20 @@ public class BottomBarDrawerLayout extends ViewGroup {
 		final SavedState savedState = (SavedState) state;
 		super.onRestoreInstanceState(savedState.getSuperState());
 
+		if (savedState.drawerBodyState != null && needsDrawerBodyInflation()) {
+			mDrawerBodyState = savedState.drawerBodyState;
+		}
+
 		if (savedState.drawerOpen) {
 			final View toOpen = findDrawer();
 			if (toOpen != null) {
 				openDrawerView(toOpen);
 			}
+		} else if (savedState.drawerOffset > 0) {
+			final View drawerView = findDrawer();
+			if (drawerView != null) {
+				moveDrawerToAnchor(drawerView, savedState.drawerOffset);
+			}
 		}
 	}
 
@@ -799,29 +3233,49 @@ public class BottomBarDrawerLayout extends ViewGroup {
 
 		final SavedState savedState = new SavedState(superState);
 
-		final int childCount = getChildCount();
-		for (int i = 0; i < childCount; i++) {
-			final View child = getChildAt(i);
-			if (isContentView(child)) {
-				continue;
-			}
-
-			final LayoutParams lp = (LayoutParams) child.getLayoutParams();
-			if (lp.knownOpen) {
-				savedState.drawerOpen = true;
-				break;
-			}
+		savedState.drawerOpen = findOpenDrawer() != null;
+		final View drawerView = findDrawer();
+		if (drawerView != null) {
+			savedState.drawerOffset = ((LayoutParams) drawerView.getLayoutParams()).onScreen;
 		}
+		savedState.drawerBodyState = saveDrawerBodyState();
 
 		return savedState;
 	}
 
 	public static class LayoutParams extends ViewGroup.MarginLayoutParams {
+		static final int NO_OFFSET_PROPERTY = -1;
+
 		float onScreen;
 		boolean knownOpen;
 
+		/**
+		 * Property of the child bound to the drawer offset, declared in XML.
+		 * @see BottomBarDrawerLayout#addOffsetBinding(View, int, float, float)
+		 */
+		int offsetProperty = NO_OFFSET_PROPERTY;
+		float offsetClosedValue;
+		float offsetOpenedValue;
+
 		public LayoutParams(Context c, AttributeSet attrs) {
 			super(c, attrs);
+
+			final TypedArray a = c.obtainStyledAttributes(attrs, R.styleable.BottomBarDrawerLayout_Layout);
+			offsetProperty = a.getInt(R.styleable.BottomBarDrawerLayout_Layout_layout_offsetProperty, NO_OFFSET_PROPERTY);
+			offsetClosedValue = getFloatOrDimension(c, a, R.styleable.BottomBarDrawerLayout_Layout_layout_offsetClosedValue);
+			offsetOpenedValue = getFloatOrDimension(c, a, R.styleable.BottomBarDrawerLayout_Layout_layout_offsetOpenedValue);
+			a.recycle();
+		}
+
+		private static float getFloatOrDimension(Context c, TypedArray a, int index) {
+			final TypedValue value = a.peekValue(index);
+			if (value == null) {
+				return 0.f;
+			}
+			if (value.type == TypedValue.TYPE_DIMENSION) {
+				return TypedValue.complexToDimension(value.data, c.getResources().getDisplayMetrics());
+			}
+			return value.getFloat();
 		}
 
 		public LayoutParams(int width, int height) {
@@ -830,6 +3284,9 @@ public class BottomBarDrawerLayout extends ViewGroup {
 
 		public LayoutParams(LayoutParams source) {
 			super(source);
+			offsetProperty = source.offsetProperty;
+			offsetClosedValue = source.offsetClosedValue;
+			offsetOpenedValue = source.offsetOpenedValue;
 		}
 
 		public LayoutParams(ViewGroup.LayoutParams source) {
@@ -841,90 +3298,111 @@ public class BottomBarDrawerLayout extends ViewGroup {
 		}
 	}
 
-	private class ViewDragCallback extends ViewDragHelper.Callback {
-		private ViewDragHelper mDragger;
+	private class DragCallback implements DrawerDragHelper.Callback {
 
-		public void setDragger(ViewDragHelper dragger) {
-			mDragger = dragger;
+		@Override
+		public View findDrawerUnderBar(float x, float y) {
+			return isBottomBarHit(x, y) ? findDrawer() : null;
 		}
 
 		@Override
-		public boolean tryCaptureView(View child, int pointerId) {
-			return !isContentView(child);
+		public void onDrawerCaptured(View capturedChild) {
+			ensureDrawerBodyInflated();
+			// Drawer grabbed while settling continues from where it is
+			takeOverSettle();
+			mDragStartOffset = getDrawerViewOffset(capturedChild);
 		}
 
 		@Override
-		public void onViewDragStateChanged(int state) {
+		public void onDragStateChanged(int state) {
 			updateDrawerState(state, mDragger.getCapturedView());
 		}
 
 		@Override
-		public void onViewPositionChanged(View changedView, int left, int top, int dx, int dy) {
-			float offset;
-			final int childHeight = changedView.getHeight();
-			final int openedDrawerTop = getHeight() - childHeight;
-			
-			// This reverses the positioning shown in onLayout.
-			offset = 1 - ((float)(top - openedDrawerTop) / (childHeight - mVisiblePartHeight));
+		public void onDrawerDragged(View drawerView, int top) {
+			moveDrawerTo(drawerView, clampDrawerTop(drawerView, top));
+		}
 
-			setDrawerViewOffset(changedView, offset);
+		@Override
+		public void onDrawerReleased(View releasedChild, float yvel) {
+			releaseDrawer(releasedChild, yvel);
+		}
+	}
 
-			final View contentView = findContent();
-			final boolean isContentViewVisible = offset == 1.f
-					&& changedView.getMeasuredHeight() == getMeasuredHeight();
-			
-			contentView.setVisibility(isContentViewVisible ? INVISIBLE : VISIBLE);
+	/**
+	 * Inflates the drawer body layout on a background thread and hands the
+	 * result over to the UI thread. Inflater is cloned as it is not thread
+	 * safe.
+	 */
+	private class DrawerBodyInflation implements Runnable {
+		final ViewGroup mDrawerBody;
+		private final int mLayout;
+		private final LayoutInflater mInflater;
+		private final Handler mHandler = new Handler();
 
-			invalidate();
-		}
+		View mView;
+		Throwable mError;
+		long mInflationTime;
 
-		@Override
-		public void onViewReleased(View releasedChild, float xvel, float yvel) {
-			// Offset is how open the drawer is, therefore left/right values
-			// are reversed from one another.
-			final float offset = getDrawerViewOffset(releasedChild);
-			final int childHeight = releasedChild.getHeight();
-
-			int top;
-			final int height = getHeight();
-			
-			final float dragSlopPerc = 0.1f;
-			final float minimumDrag = isDrawerOpen(releasedChild) ? 1.f - dragSlopPerc : dragSlopPerc; 
-			
-			top = yvel < 0 || yvel == 0 && offset > minimumDrag ? height - childHeight : height - mVisiblePartHeight;
+		/**
+		 * Only accessed on the UI thread
+		 */
+		boolean mCancelled;
 
-			if (offset < 0) {
-				top = height - mVisiblePartHeight;
-				setDrawerViewOffset(releasedChild, 0);
+		private final Runnable mAttachRunnable = new Runnable() {
+			@Override
+			public void run() {
+				attachDrawerBodyInflation(DrawerBodyInflation.this);
 			}
+		};
 
-			mDragger.settleCapturedViewAt(releasedChild.getLeft(), top);
-			invalidate();
+		DrawerBodyInflation(ViewGroup drawerBody, int layout) {
+			mDrawerBody = drawerBody;
+			mLayout = layout;
+			mInflater = LayoutInflater.from(getContext()).cloneInContext(getContext());
 		}
 
 		@Override
-		public int getViewVerticalDragRange(View child) {
-			return child.getHeight() - mVisiblePartHeight;
+		public void run() {
+			Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+			final long start = SystemClock.uptimeMillis();
+			try {
+				mView = mInflater.inflate(mLayout, mDrawerBody, false);
+			} catch (RuntimeException e) {
+				mError = e;
+			}
+			mInflationTime = SystemClock.uptimeMillis() - start;
+			mHandler.post(mAttachRunnable);
 		}
+	}
 
+	/**
+	 * Releases drawer snapshot, and drawer body content if opted in, when the
+	 * system runs low on memory.
+	 * Registered only on API 14 and newer.
+	 */
+	private class TrimMemoryCallbacks implements ComponentCallbacks2 {
 		@Override
-		public int clampViewPositionHorizontal(View child, int left, int dx) {
-			return child.getLeft();
+		public void onTrimMemory(int level) {
+			if (level >= TRIM_MEMORY_RUNNING_LOW) {
+				releaseMemory();
+			}
 		}
 
 		@Override
-		public int clampViewPositionVertical(View child, int top, int dy) {
-			final int childHeight = child.getHeight();
-			final int bottomLimit = getHeight() - mVisiblePartHeight;
-			final int topLimit = getHeight() - childHeight;
-			
-			if(top > bottomLimit){
-				top = bottomLimit;
-			} else if(top < topLimit){
-				top = topLimit;
+		public void onLowMemory() {
+			releaseMemory();
+		}
+
+		private void releaseMemory() {
+			if (mReleaseDrawerBodyOnTrimMemory) {
+				releaseDrawerBody();
 			}
-			
-			return top;
+			releaseDrawerSnapshot();
+		}
+
+		@Override
+		public void onConfigurationChanged(Configuration newConfig) {
 		}
 	}
 
@@ -933,10 +3411,15 @@ public class BottomBarDrawerLayout extends ViewGroup {
 	 */
 	protected static class SavedState extends BaseSavedState {
 		boolean drawerOpen = false;
+		float drawerOffset;
+		SparseArray<Parcelable> drawerBodyState;
 
+		@SuppressWarnings("unchecked")
 		public SavedState(Parcel in) {
 			super(in);
 			drawerOpen = in.readByte() == 1;
+			drawerOffset = in.readFloat();
+			drawerBodyState = in.readSparseArray(SavedState.class.getClassLoader());
 		}
 
 		public SavedState(Parcelable superState) {
@@ -947,6 +3430,10 @@ public class BottomBarDrawerLayout extends ViewGroup {
 		public void writeToParcel(Parcel dest, int flags) {
 			super.writeToParcel(dest, flags);
 			dest.writeByte((byte) (drawerOpen ? 1 : 0));
+			dest.writeFloat(drawerOffset);
+			@SuppressWarnings({ "unchecked", "rawtypes" })
+			final SparseArray<Object> state = (SparseArray) drawerBodyState;
+			dest.writeSparseArray(state);
 		}
 
 		public static final Parcelable.Creator<SavedState> CREATOR = new Parcelable.Creator<SavedState>() {
@@ -998,7 +3485,10 @@ public class BottomBarDrawerLayout extends ViewGroup {
 
 		public boolean filter(View child) {
 			final View openDrawer = findOpenDrawer();
-			return openDrawer != null && openDrawer != child;
+			if (openDrawer != null && openDrawer != child) {
+				return true;
+			}
+			return child == findContent() && isContentOccluded();
 		}
 
 		/**
@@ -0,0 +1,324 @@
+package sk.rajniak.bottombardrawer;
+
+import android.content.Context;
+import android.support.v4.view.MotionEventCompat;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+
+/**
+ * Vertical drag of the single drawer of {@link BottomBarDrawerLayout}. Drag
+ * can start only from the bottom bar region reported by the callback, only the
+ * active pointer is tracked and velocity is estimated from a fixed ring buffer
+ * of samples, so no objects are allocated after construction. Historical
+ * samples batched into move events feed the velocity estimate as well.
+ *
+ * <p>Helper only drags the drawer, settling of the released drawer is up to
+ * the callback.</p>
+ */
+final class DrawerDragHelper {
+
+	/**
+	 * A view is not currently being dragged or animating as a result of a
+	 * fling/snap.
+	 */
+	static final int STATE_IDLE = 0;
+
+	/**
+	 * A view is currently being dragged. The position is currently changing as
+	 * a result of user input or simulated user input.
+	 */
+	static final int STATE_DRAGGING = 1;
+
+	/**
+	 * A view is currently settling into place as a result of a fling or
+	 * predefined non-interactive motion. Never reported by this helper.
+	 */
+	static final int STATE_SETTLING = 2;
+
+	private static final int INVALID_POINTER = -1;
+
+	/**
+	 * Capacity of the velocity sample ring buffer
+	 */
+	private static final int VELOCITY_SAMPLES = 16;
+
+	/**
+	 * Only samples this recent are used for the velocity estimate
+	 */
+	private static final int VELOCITY_WINDOW = 100; // ms
+
+	/**
+	 * Callbacks from the drag helper to the layout.
+	 */
+	interface Callback {
+		/**
+		 * @return drawer if the point is on its bottom bar, null otherwise
+		 */
+		View findDrawerUnderBar(float x, float y);
+
+		void onDragStateChanged(int state);
+
+		void onDrawerCaptured(View drawerView);
+
+		/**
+		 * Called with the top position the drag would move the drawer to, the
+		 * callback clamps and applies it.
+		 */
+		void onDrawerDragged(View drawerView, int top);
+
+		/**
+		 * @param yvel
+		 *            Release velocity in pixels per second, 0 if below the
+		 *            minimum fling velocity
+		 */
+		void onDrawerReleased(View drawerView, float yvel);
+	}
+
+	private final Callback mCallback;
+	private final int mTouchSlop;
+	private final float mMaxVelocity;
+	private float mMinVelocity;
+	private float mPredictionTime;
+
+	private int mDragState = STATE_IDLE;
+	private int mActivePointerId = INVALID_POINTER;
+	private View mCandidateView;
+	private View mCapturedView;
+	private float mInitialY;
+	private float mLastY;
+
+	private final float[] mSampleY = new float[VELOCITY_SAMPLES];
+	private final long[] mSampleTime = new long[VELOCITY_SAMPLES];
+	private int mSampleHead;
+	private int mSampleCount;
+
+	DrawerDragHelper(Context context, Callback callback) {
+		mCallback = callback;
+		final ViewConfiguration configuration = ViewConfiguration.get(context);
+		mTouchSlop = configuration.getScaledTouchSlop();
+		mMaxVelocity = configuration.getScaledMaximumFlingVelocity();
+		mMinVelocity = configuration.getScaledMinimumFlingVelocity();
+	}
+
+	/**
+	 * @param minVel
+	 *            Velocity in pixels per second below which release is not
+	 *            considered a fling
+	 */
+	void setMinVelocity(float minVel) {
+		mMinVelocity = minVel;
+	}
+
+	/**
+	 * Drawer is dragged to where the finger is expected to be after the time,
+	 * extrapolated from the current velocity. Prediction never exceeds touch
+	 * slop, so a sudden stop of the finger doesn't leave the drawer visibly
+	 * ahead.
+	 * 
+	 * @param seconds
+	 *            Time to predict ahead, usually one frame, 0 to disable
+	 */
+	void setPredictionTime(float seconds) {
+		mPredictionTime = seconds;
+	}
+
+	int getDragState() {
+		return mDragState;
+	}
+
+	View getCapturedView() {
+		return mCapturedView;
+	}
+
+	/**
+	 * Processes the event seen by onInterceptTouchEvent.
+	 *
+	 * @return true if the drawer is being dragged and the rest of the gesture
+	 *         should be intercepted
+	 */
+	boolean shouldInterceptTouchEvent(MotionEvent ev) {
+		processTouchEvent(ev);
+		return mDragState == STATE_DRAGGING;
+	}
+
+	/**
+	 * Processes the event seen by onTouchEvent.
+	 */
+	void processTouchEvent(MotionEvent ev) {
+		final int action = MotionEventCompat.getActionMasked(ev);
+		switch (action) {
+		case MotionEvent.ACTION_DOWN: {
+			cancel();
+			final float x = ev.getX();
+			final float y = ev.getY();
+			mActivePointerId = MotionEventCompat.getPointerId(ev, 0);
+			mCandidateView = mCallback.findDrawerUnderBar(x, y);
+			mInitialY = y;
+			mLastY = y;
+			addSample(y, ev.getEventTime());
+			break;
+		}
+		case MotionEvent.ACTION_MOVE: {
+			final int pointerIndex = MotionEventCompat.findPointerIndex(ev, mActivePointerId);
+			if (pointerIndex < 0 || mCandidateView == null) {
+				break;
+			}
+
+			// Batched samples since the last event, oldest first
+			final int historySize = ev.getHistorySize();
+			for (int h = 0; h < historySize; h++) {
+				final float historicalY = pointerIndex == 0 ? ev.getHistoricalY(h) : ev.getHistoricalY(pointerIndex, h);
+				addSample(historicalY, ev.getHistoricalEventTime(h));
+			}
+
+			final float y = MotionEventCompat.getY(ev, pointerIndex);
+			addSample(y, ev.getEventTime());
+			if (mDragState != STATE_DRAGGING) {
+				final float dy = y - mInitialY;
+				if (Math.abs(dy) <= mTouchSlop) {
+					break;
+				}
+				// Drawer follows the finger from the point where it left the slop
+				mLastY = mInitialY + (dy > 0 ? mTouchSlop : -mTouchSlop);
+				captureDrawer();
+			}
+			dragTo(y);
+			break;
+		}
+		case MotionEventCompat.ACTION_POINTER_UP: {
+			final int actionIndex = MotionEventCompat.getActionIndex(ev);
+			if (MotionEventCompat.getPointerId(ev, actionIndex) != mActivePointerId) {
+				break;
+			}
+
+			// Continue with another pointer from where it is
+			final int newIndex = actionIndex == 0 ? 1 : 0;
+			final float y = MotionEventCompat.getY(ev, newIndex);
+			mActivePointerId = MotionEventCompat.getPointerId(ev, newIndex);
+			mInitialY = y;
+			mLastY = y;
+			clearSamples();
+			addSample(y, ev.getEventTime());
+			break;
+		}
+		case MotionEvent.ACTION_UP: {
+			if (mDragState == STATE_DRAGGING) {
+				mCallback.onDrawerReleased(mCapturedView, computeVelocity());
+			}
+			cancel();
+			break;
+		}
+		case MotionEvent.ACTION_CANCEL: {
+			if (mDragState == STATE_DRAGGING) {
+				mCallback.onDrawerReleased(mCapturedView, 0);
+			}
+			cancel();
+			break;
+		}
+		}
+	}
+
+	/**
+	 * Forgets the current gesture, dragged drawer is left where it is.
+	 */
+	void cancel() {
+		mActivePointerId = INVALID_POINTER;
+		mCandidateView = null;
+		clearSamples();
+		if (mDragState == STATE_DRAGGING) {
+			setDragState(STATE_IDLE);
+		}
+		mCapturedView = null;
+	}
+
+	private void captureDrawer() {
+		mCapturedView = mCandidateView;
+		mCallback.onDrawerCaptured(mCapturedView);
+		setDragState(STATE_DRAGGING);
+	}
+
+	private void dragTo(float y) {
+		if (mPredictionTime > 0) {
+			final float prediction = estimateVelocity() * mPredictionTime;
+			y += Math.max(-mTouchSlop, Math.min(prediction, mTouchSlop));
+		}
+
+		// Only whole pixels are consumed, the rest carries over to the next move
+		final int dy = (int) (y - mLastY);
+		if (dy == 0) {
+			return;
+		}
+		mLastY += dy;
+		mCallback.onDrawerDragged(mCapturedView, mCapturedView.getTop() + dy);
+	}
+
+	private void setDragState(int state) {
+		if (mDragState != state) {
+			mDragState = state;
+			mCallback.onDragStateChanged(state);
+		}
+	}
+
+	private void addSample(float y, long time) {
+		mSampleHead = (mSampleHead + 1) % VELOCITY_SAMPLES;
+		mSampleY[mSampleHead] = y;
+		mSampleTime[mSampleHead] = time;
+		if (mSampleCount < VELOCITY_SAMPLES) {
+			mSampleCount++;
+		}
+	}
+
+	private void clearSamples() {
+		mSampleCount = 0;
+	}
+
+	/**
+	 * @return release velocity in pixels per second, 0 if below the minimum
+	 *         velocity
+	 */
+	private float computeVelocity() {
+		final float velocity = estimateVelocity();
+		final float speed = Math.abs(velocity);
+		if (speed < mMinVelocity) {
+			return 0;
+		}
+		return speed > mMaxVelocity ? Math.signum(velocity) * mMaxVelocity : velocity;
+	}
+
+	/**
+	 * Least squares slope of the recent samples.
+	 *
+	 * @return velocity in pixels per second
+	 */
+	private float estimateVelocity() {
+		if (mSampleCount < 2) {
+			return 0;
+		}
+
+		final long newestTime = mSampleTime[mSampleHead];
+		float sumT = 0, sumY = 0, sumTT = 0, sumTY = 0;
+		int n = 0;
+		for (int i = 0; i < mSampleCount; i++) {
+			final int index = (mSampleHead - i + VELOCITY_SAMPLES) % VELOCITY_SAMPLES;
+			final long age = newestTime - mSampleTime[index];
+			if (age > VELOCITY_WINDOW) {
+				break;
+			}
+			final float t = -age / 1000.f;
+			final float y = mSampleY[index] - mSampleY[mSampleHead];
+			sumT += t;
+			sumY += y;
+			sumTT += t * t;
+			sumTY += t * y;
+			n++;
+		}
+
+		final float denominator = n * sumTT - sumT * sumT;
+		if (n < 2 || denominator == 0) {
+			return 0;
+		}
+
+		return (n * sumTY - sumT * sumY) / denominator;
+	}
+}
@@ -0,0 +1,167 @@
+package sk.rajniak.bottombardrawer;
+
+/**
+ * Damped spring moving a single coordinate towards its target. Each step
+ * evaluates the closed form solution of the spring equation, so the result
+ * doesn't depend on frame rate and large steps stay stable.
+ *
+ * <p>Plain Java, positions are in pixels and time in seconds.</p>
+ */
+final class DrawerSpring {
+
+	/**
+	 * Stiffness of a spring settling in about a quarter of a second.
+	 */
+	static final float DEFAULT_STIFFNESS = 400.f;
+
+	/**
+	 * Critically damped spring, fastest settle without overshoot.
+	 */
+	static final float DEFAULT_DAMPING_RATIO = 1.f;
+
+	private float mStiffness = DEFAULT_STIFFNESS;
+	private float mDampingRatio = DEFAULT_DAMPING_RATIO;
+
+	private float mPositionThreshold = 0.5f;
+	private float mVelocityThreshold = 1.f;
+
+	private double mPosition;
+	private double mVelocity;
+	private double mTarget;
+	private boolean mAtRest = true;
+
+	/**
+	 * @param stiffness
+	 *            Spring constant per unit of mass, must be positive
+	 */
+	void setStiffness(float stiffness) {
+		if (stiffness <= 0) {
+			throw new IllegalArgumentException("Spring stiffness must be positive");
+		}
+		mStiffness = stiffness;
+	}
+
+	float getStiffness() {
+		return mStiffness;
+	}
+
+	/**
+	 * @param dampingRatio
+	 *            Damping relative to critical damping, must be positive.
+	 *            Values below 1 overshoot the target, values above 1
+	 *            approach it slower
+	 */
+	void setDampingRatio(float dampingRatio) {
+		if (dampingRatio <= 0) {
+			throw new IllegalArgumentException("Spring damping ratio must be positive");
+		}
+		mDampingRatio = dampingRatio;
+	}
+
+	float getDampingRatio() {
+		return mDampingRatio;
+	}
+
+	/**
+	 * Spring is at rest once it is closer to target than the position
+	 * threshold and slower than the velocity threshold.
+	 */
+	void setRestThresholds(float position, float velocity) {
+		mPositionThreshold = position;
+		mVelocityThreshold = velocity;
+	}
+
+	/**
+	 * Starts the spring at the position with initial velocity.
+	 */
+	void start(float position, float velocity, float target) {
+		mPosition = position;
+		mVelocity = velocity;
+		mTarget = target;
+		mAtRest = isAtRest();
+		if (mAtRest) {
+			mPosition = target;
+			mVelocity = 0;
+		}
+	}
+
+	/**
+	 * Stops the spring at its current position.
+	 */
+	void stop() {
+		mVelocity = 0;
+		mAtRest = true;
+	}
+
+	/**
+	 * Advances the spring by the time step.
+	 *
+	 * @param dt
+	 *            Elapsed time in seconds
+	 * @return true if the spring is still moving
+	 */
+	boolean step(float dt) {
+		if (mAtRest) {
+			return false;
+		}
+		if (dt <= 0) {
+			return true;
+		}
+
+		final double omega = Math.sqrt(mStiffness);
+		final double zeta = mDampingRatio;
+		final double x0 = mPosition - mTarget;
+		final double v0 = mVelocity;
+		final double x;
+		final double v;
+
+		if (zeta > 1) {
+			// Overdamped
+			final double root = omega * Math.sqrt(zeta * zeta - 1);
+			final double r1 = -zeta * omega - root;
+			final double r2 = -zeta * omega + root;
+			final double c2 = (v0 - r1 * x0) / (r2 - r1);
+			final double c1 = x0 - c2;
+			final double e1 = Math.exp(r1 * dt);
+			final double e2 = Math.exp(r2 * dt);
+			x = c1 * e1 + c2 * e2;
+			v = c1 * r1 * e1 + c2 * r2 * e2;
+		} else if (zeta == 1) {
+			// Critically damped
+			final double c2 = v0 + omega * x0;
+			final double e = Math.exp(-omega * dt);
+			x = (x0 + c2 * dt) * e;
+			v = (c2 - omega * (x0 + c2 * dt)) * e;
+		} else {
+			// Underdamped
+			final double omegaD = omega * Math.sqrt(1 - zeta * zeta);
+			final double c2 = (v0 + zeta * omega * x0) / omegaD;
+			final double e = Math.exp(-zeta * omega * dt);
+			final double cos = Math.cos(omegaD * dt);
+			final double sin = Math.sin(omegaD * dt);
+			x = e * (x0 * cos + c2 * sin);
+			v = -zeta * omega * x + e * omegaD * (c2 * cos - x0 * sin);
+		}
+
+		mPosition = mTarget + x;
+		mVelocity = v;
+		if (isAtRest()) {
+			mPosition = mTarget;
+			mVelocity = 0;
+			mAtRest = true;
+		}
+		return !mAtRest;
+	}
+
+	private boolean isAtRest() {
+		return Math.abs(mPosition - mTarget) < mPositionThreshold && Math.abs(mVelocity) < mVelocityThreshold;
+	}
+
+	float getPosition() {
+		return (float) mPosition;
+	}
+
+	float getVelocity() {
+		return (float) mVelocity;
+	}
+}